@@ -0,0 +1,175 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checks a few thousand artifact ids against large black and white lists, the way <code>isAuthorized</code> does
+ * for every artifact of a deploy with deployDependencies. The sequential loop over the patterns is the way the
+ * lists were matched before they were compiled into an {@link ArtifactPolicy}.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ArtifactPolicyBenchmark
+{
+    @Param( { "10", "100" } )
+    public int patterns;
+
+    @Param( { "5000" } )
+    public int artifacts;
+
+    private List<String> blackList;
+
+    private List<String> whiteList;
+
+    private List<Pattern> compiledBlackList;
+
+    private List<Pattern> compiledWhiteList;
+
+    private String[] ids;
+
+    private ArtifactPolicy warmPolicy;
+
+    @Setup
+    public void setUp()
+    {
+        blackList = new ArrayList<String>();
+        for ( int i = 0; i < patterns; i++ )
+        {
+            // mostly group prefixes, with the occasional real expression
+            blackList.add( i % 5 == 4 ? ".*:internal-" + i + ":.*" : "com.vendor" + i + ".*" );
+        }
+        blackList.add( ".*SNAPSHOT" );
+
+        whiteList = new ArrayList<String>();
+        whiteList.add( "(com|org|net)\\..*" );
+        whiteList.add( "[^:]+:[^:]+:(jar|pom|war):.*" );
+
+        compiledBlackList = compile( blackList );
+        compiledWhiteList = compile( whiteList );
+
+        ids = new String[artifacts];
+        for ( int i = 0; i < artifacts; i++ )
+        {
+            String group = i % 3 == 0 ? "com.vendor" + ( i % ( patterns * 2 ) ) : "org.example.group" + ( i % 50 );
+            ids[i] = group + ":artifact-" + i + ":jar:" + ( i % 10 == 0 ? "1.0-SNAPSHOT" : "1." + ( i % 7 ) );
+        }
+
+        warmPolicy = new ArtifactPolicy( blackList, whiteList, new BenchmarkSupport.SilentLog() );
+        for ( String id : ids )
+        {
+            warmPolicy.isAuthorized( id );
+        }
+    }
+
+    @Benchmark
+    public int sequentialRegex()
+    {
+        int authorized = 0;
+        for ( String id : ids )
+        {
+            if ( isAuthorizedSequentially( id ) )
+            {
+                authorized++;
+            }
+        }
+        return authorized;
+    }
+
+    @Benchmark
+    public int compiledPolicy()
+    {
+        ArtifactPolicy policy = new ArtifactPolicy( blackList, whiteList, new BenchmarkSupport.SilentLog() );
+        int authorized = 0;
+        for ( String id : ids )
+        {
+            if ( policy.isAuthorized( id ) )
+            {
+                authorized++;
+            }
+        }
+        return authorized;
+    }
+
+    @Benchmark
+    public int memoizedPolicy()
+    {
+        int authorized = 0;
+        for ( String id : ids )
+        {
+            if ( warmPolicy.isAuthorized( id ) )
+            {
+                authorized++;
+            }
+        }
+        return authorized;
+    }
+
+    private boolean isAuthorizedSequentially( String id )
+    {
+        for ( Pattern black : compiledBlackList )
+        {
+            if ( black.matcher( id ).matches() )
+            {
+                return false;
+            }
+        }
+        for ( Pattern white : compiledWhiteList )
+        {
+            if ( !white.matcher( id ).matches() )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Pattern> compile( List<String> expressions )
+    {
+        List<Pattern> compiled = new ArrayList<Pattern>();
+        for ( String expression : expressions )
+        {
+            compiled.add( Pattern.compile( expression ) );
+        }
+        return compiled;
+    }
+}
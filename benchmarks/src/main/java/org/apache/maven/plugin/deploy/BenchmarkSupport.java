@@ -0,0 +1,220 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Helpers shared by the benchmarks: realistic pom files are generated on disk, the mojos are configured with
+ * {@link MojoSupport} from the tests of the plugin.
+ *
+ * @version $Id$
+ */
+final class BenchmarkSupport
+{
+    private BenchmarkSupport()
+    {
+    }
+
+    /**
+     * Creates a deploy mojo for a bare project, as far as the benchmarked code needs one.
+     */
+    static DeployMojo newDeployMojo( ArtifactRepository localRepository )
+    {
+        return MojoSupport.newDeployMojo( localRepository, new SilentLog() );
+    }
+
+    /**
+     * Writes a pom in the style of a typical corporate module: plenty of dependencies, some of them test scoped, and
+     * all the build, scm and people information a filtered pom leaves out.
+     *
+     * @param parent the parent coordinates as groupId:artifactId:version, or <code>null</code>
+     */
+    static void writePom( File file, String groupId, String artifactId, String version, String parent,
+                          int dependencies )
+        throws IOException
+    {
+        StringBuilder pom = new StringBuilder();
+        pom.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+        pom.append( "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" );
+        pom.append( "  <modelVersion>4.0.0</modelVersion>\n" );
+        if ( parent != null )
+        {
+            String[] coordinates = parent.split( ":" );
+            pom.append( "  <parent>\n    <groupId>" ).append( coordinates[0] ).append( "</groupId>\n" );
+            pom.append( "    <artifactId>" ).append( coordinates[1] ).append( "</artifactId>\n" );
+            pom.append( "    <version>" ).append( coordinates[2] ).append( "</version>\n" );
+            pom.append( "    <relativePath/>\n  </parent>\n" );
+        }
+        pom.append( "  <groupId>" ).append( groupId ).append( "</groupId>\n" );
+        pom.append( "  <artifactId>" ).append( artifactId ).append( "</artifactId>\n" );
+        pom.append( "  <version>" ).append( version ).append( "</version>\n" );
+        pom.append( "  <packaging>jar</packaging>\n" );
+        pom.append( "  <name>Benchmark module &amp; friends</name>\n" );
+        pom.append( "  <description>A module with the usual amount of metadata.</description>\n" );
+        pom.append( "  <url>http://www.example.org/benchmark</url>\n" );
+        pom.append( "  <licenses>\n    <license>\n      <name>Apache License, Version 2.0</name>\n" );
+        pom.append( "      <url>http://www.apache.org/licenses/LICENSE-2.0</url>\n    </license>\n  </licenses>\n" );
+        pom.append( "  <scm>\n    <connection>scm:git:git://example.org/benchmark.git</connection>\n  </scm>\n" );
+        pom.append( "  <developers>\n" );
+        for ( int i = 0; i < 5; i++ )
+        {
+            pom.append( "    <developer>\n      <id>dev" ).append( i ).append( "</id>\n" );
+            pom.append( "      <email>dev" ).append( i ).append( "@example.org</email>\n    </developer>\n" );
+        }
+        pom.append( "  </developers>\n" );
+        pom.append( "  <dependencies>\n" );
+        for ( int i = 0; i < dependencies; i++ )
+        {
+            pom.append( "    <dependency>\n" );
+            pom.append( "      <groupId>org.example.dependency" ).append( i % 7 ).append( "</groupId>\n" );
+            pom.append( "      <artifactId>library-" ).append( i ).append( "</artifactId>\n" );
+            pom.append( "      <version>" ).append( 1 + i % 3 ).append( ".0." ).append( i ).append( "</version>\n" );
+            if ( i % 4 == 0 )
+            {
+                pom.append( "      <scope>test</scope>\n" );
+            }
+            pom.append( "    </dependency>\n" );
+        }
+        pom.append( "  </dependencies>\n" );
+        pom.append( "  <build>\n    <plugins>\n" );
+        for ( int i = 0; i < 6; i++ )
+        {
+            pom.append( "      <plugin>\n        <artifactId>maven-plugin-" ).append( i ).append( "</artifactId>\n" );
+            pom.append( "        <version>2.").append( i ).append( "</version>\n" );
+            pom.append( "        <configuration>\n          <setting>value</setting>\n" );
+            pom.append( "        </configuration>\n      </plugin>\n" );
+        }
+        pom.append( "    </plugins>\n  </build>\n" );
+        pom.append( "</project>\n" );
+
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", pom.toString() );
+    }
+
+    /**
+     * Writes a parent pom with dependency management and properties into a repository directory.
+     */
+    static File writeParentPom( File repository, String groupId, String artifactId, String version )
+        throws IOException
+    {
+        File file = new File( repository, groupId.replace( '.', '/' ) + '/' + artifactId + '/' + version + '/'
+            + artifactId + '-' + version + ".pom" );
+
+        StringBuilder pom = new StringBuilder();
+        pom.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+        pom.append( "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" );
+        pom.append( "  <modelVersion>4.0.0</modelVersion>\n" );
+        pom.append( "  <groupId>" ).append( groupId ).append( "</groupId>\n" );
+        pom.append( "  <artifactId>" ).append( artifactId ).append( "</artifactId>\n" );
+        pom.append( "  <version>" ).append( version ).append( "</version>\n" );
+        pom.append( "  <packaging>pom</packaging>\n" );
+        pom.append( "  <properties>\n    <junit.version>4.11</junit.version>\n  </properties>\n" );
+        pom.append( "  <dependencyManagement>\n    <dependencies>\n" );
+        pom.append( "      <dependency>\n        <groupId>junit</groupId>\n        <artifactId>junit</artifactId>\n" );
+        pom.append( "        <version>${junit.version}</version>\n      </dependency>\n" );
+        pom.append( "    </dependencies>\n  </dependencyManagement>\n" );
+        pom.append( "</project>\n" );
+
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", pom.toString() );
+        return file;
+    }
+
+    /**
+     * Keeps the benchmarked code from spending its time on the console.
+     */
+    static class SilentLog
+        implements Log
+    {
+        public boolean isDebugEnabled()
+        {
+            return false;
+        }
+
+        public void debug( CharSequence content )
+        {
+        }
+
+        public void debug( CharSequence content, Throwable error )
+        {
+        }
+
+        public void debug( Throwable error )
+        {
+        }
+
+        public boolean isInfoEnabled()
+        {
+            return false;
+        }
+
+        public void info( CharSequence content )
+        {
+        }
+
+        public void info( CharSequence content, Throwable error )
+        {
+        }
+
+        public void info( Throwable error )
+        {
+        }
+
+        public boolean isWarnEnabled()
+        {
+            return false;
+        }
+
+        public void warn( CharSequence content )
+        {
+        }
+
+        public void warn( CharSequence content, Throwable error )
+        {
+        }
+
+        public void warn( Throwable error )
+        {
+        }
+
+        public boolean isErrorEnabled()
+        {
+            return false;
+        }
+
+        public void error( CharSequence content )
+        {
+        }
+
+        public void error( CharSequence content, Throwable error )
+        {
+        }
+
+        public void error( Throwable error )
+        {
+        }
+    }
+}
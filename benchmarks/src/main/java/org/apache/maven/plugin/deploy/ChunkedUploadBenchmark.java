@@ -0,0 +1,134 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Uploads a large file in chunks to a {@link StandInRepository} that drops some of the chunks, and checks the stored
+ * file is complete. Without failures it measures the cost of the chunking, with them the resumed uploads, which only
+ * send the dropped chunks again.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ChunkedUploadBenchmark
+{
+    @Param( { "0", "5" } )
+    public int failEvery;
+
+    @Param( { "1", "4" } )
+    public int threads;
+
+    @Param( { "true", "false" } )
+    public boolean outOfOrder;
+
+    private static final int SIZE = 32 * 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private File directory;
+
+    private File file;
+
+    private StandInRepository repository;
+
+    private int uploads;
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        directory = File.createTempFile( "chunked-upload-benchmark", "" );
+        directory.delete();
+        directory.mkdirs();
+
+        file = new File( directory, "image.bin" );
+        byte[] content = new byte[CHUNK_SIZE];
+        Random random = new Random( 42 );
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            for ( int written = 0; written < SIZE; written += content.length )
+            {
+                random.nextBytes( content );
+                out.write( content );
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+
+        repository = new StandInRepository( new File( directory, "remote" ), failEvery, outOfOrder );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        repository.stop();
+        FileUtils.deleteDirectory( directory );
+    }
+
+    @Benchmark
+    public void upload()
+        throws Exception
+    {
+        String path = "org/example/benchmark/image/1.0/image-1.0-" + ( uploads++ ) + ".bin";
+        ChunkedUploader uploader = new ChunkedUploader( new URL( repository.getUrl() + '/' + path ), file,
+                                                        CHUNK_SIZE, threads, null, null, null,
+                                                        new BenchmarkSupport.SilentLog() );
+        uploader.upload();
+
+        File uploaded = new File( directory, "remote/repository/" + path );
+        if ( !ChecksumUtils.sha1( uploaded ).equals( ChecksumUtils.sha1( file ) ) )
+        {
+            throw new IOException( uploaded + " differs from " + file );
+        }
+        uploaded.delete();
+    }
+}
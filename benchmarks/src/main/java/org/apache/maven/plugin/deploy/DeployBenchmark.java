@@ -0,0 +1,141 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.deployer.ArtifactDeployer;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deploys a release artifact into a <code>file://</code> repository with <code>AbstractDeployMojo.deploy</code>,
+ * using the real Maven deployer looked up from a Plexus container. With the deployment ledger the artifact is only
+ * uploaded in the first invocation, which shows what the ledger saves on unchanged artifacts.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class DeployBenchmark
+{
+    @Param( { "1024", "10485760" } )
+    public int size;
+
+    @Param( { "false", "true" } )
+    public boolean ledger;
+
+    private File directory;
+
+    private DefaultPlexusContainer container;
+
+    private DeployMojo mojo;
+
+    private ArtifactRepository localRepository;
+
+    private ArtifactRepository remoteRepository;
+
+    private File file;
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        directory = File.createTempFile( "deploy-benchmark", "" );
+        directory.delete();
+        directory.mkdirs();
+
+        file = new File( directory, "artifact.jar" );
+        byte[] content = new byte[size];
+        new Random( 42 ).nextBytes( content );
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+
+        container = new DefaultPlexusContainer();
+        localRepository = MojoSupport.repository( "local", new File( directory, "local" ) );
+        remoteRepository = MojoSupport.repository( "remote", new File( directory, "remote" ) );
+
+        mojo = BenchmarkSupport.newDeployMojo( localRepository );
+        mojo.setDeployer( container.lookup( ArtifactDeployer.class ) );
+        MojoSupport.set( mojo, "retryFailedDeploymentCount", Integer.valueOf( 1 ) );
+        MojoSupport.set( mojo, "useDeploymentLedger", Boolean.valueOf( ledger ) );
+        MojoSupport.set( mojo, "ledgerDirectory", new File( directory, "ledger" ) );
+    }
+
+    /**
+     * The mojo keeps a sample of every deployment for its report, which would pile up over the iterations.
+     */
+    @Setup( Level.Invocation )
+    public void clearMetrics()
+    {
+        mojo.getMetrics().clear();
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        mojo.closeDeploymentLedgers();
+        container.dispose();
+        FileUtils.deleteDirectory( directory );
+    }
+
+    @Benchmark
+    public void deploy()
+        throws Exception
+    {
+        Artifact artifact = new DefaultArtifact( "org.example.benchmark", "deployed", "1.0", null, "jar", null,
+                                                 new DefaultArtifactHandler( "jar" ) );
+        mojo.deploy( file, artifact, remoteRepository, localRepository );
+    }
+}
@@ -0,0 +1,117 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filters a realistic pom with <code>DeployMojo.filterPom</code>, with and without a parent in the local repository,
+ * through the model builder and through the streaming filter. The filtered pom cache is disabled, so every
+ * invocation does the actual filtering.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class FilterPomBenchmark
+{
+    @Param( { "false", "true" } )
+    public boolean streaming;
+
+    @Param( { "false", "true" } )
+    public boolean withParent;
+
+    @Param( { "40" } )
+    public int dependencies;
+
+    private File directory;
+
+    private File pomFile;
+
+    private DeployMojo mojo;
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        directory = File.createTempFile( "filter-pom-benchmark", "" );
+        directory.delete();
+        File localRepository = new File( directory, "repository" );
+
+        String parent = null;
+        if ( withParent )
+        {
+            BenchmarkSupport.writeParentPom( localRepository, "org.example.benchmark", "parent", "1.0" );
+            parent = "org.example.benchmark:parent:1.0";
+        }
+        pomFile = new File( directory, "pom.xml" );
+        BenchmarkSupport.writePom( pomFile, "org.example.benchmark", "module", "1.0", parent, dependencies );
+
+        mojo = BenchmarkSupport.newDeployMojo( MojoSupport.repository( "local", localRepository ) );
+        MojoSupport.set( mojo, "modelBuilder", new DefaultModelBuilderFactory().newInstance() );
+        MojoSupport.set( mojo, "streamingPomFilter", Boolean.valueOf( streaming ) );
+        MojoSupport.set( mojo, "filteredPomCache", Boolean.FALSE );
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( directory );
+    }
+
+    @Benchmark
+    public File filterPom()
+        throws Exception
+    {
+        Artifact pomArtifact = new DefaultArtifact( "org.example.benchmark", "module", "1.0", "", "pom", "",
+                                                    new DeployMojo.PomArtifactHandler() );
+        pomArtifact.setFile( pomFile );
+
+        MojoSupport.invoke( mojo, "filterPom", new Class<?>[] { Artifact.class }, pomArtifact );
+
+        // filterPom leaves its result in a temporary file
+        File filtered = pomArtifact.getFile();
+        filtered.delete();
+        return filtered;
+    }
+}
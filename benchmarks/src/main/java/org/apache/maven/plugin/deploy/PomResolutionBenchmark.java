@@ -0,0 +1,170 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.lifecycle.internal.LifecycleDependencyResolver;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the pom resolution step of <code>executeWithArtifacts</code> for a large set of dependencies, with a cold and
+ * a warm pom cache. The dependency resolver is replaced by one that finds every pom in a local repository, so the
+ * benchmark measures the plugin and not the network.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PomResolutionBenchmark
+{
+    @Param( { "100", "1000" } )
+    public int artifacts;
+
+    @Param( { "false", "true" } )
+    public boolean cached;
+
+    private File directory;
+
+    private File pomFile;
+
+    private List<Artifact> dependencies;
+
+    private DeployMojo mojo;
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        directory = File.createTempFile( "pom-resolution-benchmark", "" );
+        directory.delete();
+        pomFile = new File( directory, "dependency.pom" );
+        BenchmarkSupport.writePom( pomFile, "org.example.dependency", "dependency", "1.0", null, 10 );
+
+        dependencies = new ArrayList<Artifact>();
+        for ( int i = 0; i < artifacts; i++ )
+        {
+            Artifact dependency = new DefaultArtifact( "org.example.group" + ( i % 20 ), "library-" + i, "1." + i,
+                                                       Artifact.SCOPE_RUNTIME, "jar", null,
+                                                       new DefaultArtifactHandler( "jar" ) );
+            dependency.setFile( pomFile );
+            dependencies.add( dependency );
+        }
+
+        ArtifactRepository localRepository = MojoSupport.repository( "local", new File( directory, "repo" ) );
+        mojo = BenchmarkSupport.newDeployMojo( localRepository );
+        MojoSupport.set( mojo, "lcdResolver", new LocalPomResolver( pomFile ) );
+        MojoSupport.set( mojo, "pomCacheDirectory", new File( directory, "cache" ) );
+
+        if ( cached )
+        {
+            // one run fills the cache for all the others
+            resolve();
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( directory );
+    }
+
+    @Benchmark
+    public int resolve()
+        throws Exception
+    {
+        // start over as if this was a new build
+        MojoSupport.set( mojo, "pomArtifacts", new HashMap<String, Artifact>() );
+        getProject().setDependencyArtifacts( new HashSet<Artifact>() );
+        PomCache pomCache = cached ? (PomCache) MojoSupport.invoke( mojo, "openPomCache", new Class<?>[0] ) : null;
+
+        MojoSupport.invoke( mojo, "resolvePomArtifacts", new Class<?>[] { Collection.class, PomCache.class },
+                                 dependencies, pomCache );
+        if ( pomCache != null )
+        {
+            pomCache.save();
+        }
+        return getProject().getDependencyArtifacts().size();
+    }
+
+    private MavenProject getProject()
+    {
+        return mojo.project;
+    }
+
+    /**
+     * Finds the pom of every dependency at once, like a warm local repository.
+     */
+    static class LocalPomResolver
+        extends LifecycleDependencyResolver
+    {
+        private final File pomFile;
+
+        LocalPomResolver( File pomFile )
+        {
+            this.pomFile = pomFile;
+        }
+
+        public void resolveProjectDependencies( MavenProject project, Collection<String> scopesToCollect,
+                                                Collection<String> scopesToResolve, MavenSession session,
+                                                boolean aggregating, Set<Artifact> projectArtifacts )
+        {
+            for ( Object dependency : project.getDependencyArtifacts() )
+            {
+                Artifact artifact = (Artifact) dependency;
+                if ( artifact.getFile() == null )
+                {
+                    artifact.setFile( pomFile );
+                    artifact.setResolved( true );
+                }
+            }
+        }
+    }
+}
@@ -20,17 +20,37 @@ package org.apache.maven.plugin.deploy;
  */
 
 import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 
+import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
 import org.apache.maven.artifact.deployer.ArtifactDeployer;
 import org.apache.maven.artifact.deployer.ArtifactDeploymentException;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.artifact.ProjectArtifactMetadata;
+import org.apache.maven.repository.legacy.WagonManager;
 import org.apache.maven.repository.legacy.repository.ArtifactRepositoryFactory;
+import org.sonatype.aether.RepositorySystem;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.repository.Authentication;
 
 /**
  * @version $Id: AbstractDeployMojo.java 1137869 2011-06-21 06:18:10Z stephenc $
@@ -50,6 +70,13 @@ public abstract class AbstractDeployMojo
      */
     ArtifactRepositoryFactory repositoryFactory;
 
+    /**
+     * Used to fetch remote checksums.
+     *
+     * @component
+     */
+    private WagonManager wagonManager;
+
     /**
      * Map that contains the layouts.
      *
@@ -64,6 +91,13 @@ public abstract class AbstractDeployMojo
      */
     private ArtifactRepository localRepository;
 
+    /**
+     * @parameter default-value="${session}"
+     * @required
+     * @readonly
+     */
+    protected MavenSession session;
+
     /**
      * Flag whether Maven is currently in online/offline mode.
      * 
@@ -88,6 +122,199 @@ public abstract class AbstractDeployMojo
      */
     private int retryFailedDeploymentCount;
 
+    /**
+     * Delay before the first retry of a failed deployment, in milliseconds. Every further retry waits twice as long,
+     * up to <code>retryBackoffMaxMillis</code>, and every delay is randomized between half and all of its value so
+     * parallel uploads do not retry in lockstep.
+     *
+     * @parameter expression="${retryBackoffMillis}" default-value="1000"
+     */
+    private long retryBackoffMillis;
+
+    /**
+     * Longest delay between two retries of a failed deployment, in milliseconds.
+     *
+     * @parameter expression="${retryBackoffMaxMillis}" default-value="30000"
+     */
+    private long retryBackoffMaxMillis;
+
+    /**
+     * Number of consecutive failed uploads to a repository after which further uploads to it are refused for
+     * <code>circuitBreakerCoolDownMillis</code>, by every mojo in the build. Set to 0 to disable the circuit breaker.
+     *
+     * @parameter expression="${circuitBreakerThreshold}" default-value="0"
+     */
+    private int circuitBreakerThreshold;
+
+    /**
+     * How long uploads to a repository are refused once the circuit breaker opened, in milliseconds. Afterwards a
+     * single upload is tried, which closes the circuit again when it succeeds.
+     *
+     * @parameter expression="${circuitBreakerCoolDownMillis}" default-value="60000"
+     */
+    private long circuitBreakerCoolDownMillis;
+
+    /**
+     * Set this to 'true' to hold uploads back until the cool-down has passed instead of failing them at once while
+     * the circuit breaker is open.
+     *
+     * @parameter expression="${circuitBreakerPause}" default-value="false"
+     */
+    private boolean circuitBreakerPause;
+
+    private final Random jitter = new Random();
+
+    /**
+     * Number of artifacts that are uploaded at the same time. The default deploys them one after the other.
+     *
+     * @parameter expression="${deployThreads}" default-value="1"
+     */
+    private int deployThreads;
+
+    /**
+     * Set this to 'true' to skip release artifacts whose remote SHA-1 checksum matches the local file.
+     *
+     * @parameter expression="${skipAlreadyDeployed}" default-value="false"
+     */
+    private boolean skipAlreadyDeployed;
+
+    private RemoteChecksumProbe checksumProbe;
+
+    /**
+     * Set this to 'true' to keep a local ledger of the release artifacts deployed to each repository, and to skip
+     * those whose files did not change since they were deployed.
+     *
+     * @parameter expression="${useDeploymentLedger}" default-value="false"
+     */
+    private boolean useDeploymentLedger;
+
+    /**
+     * Directory of the deployment ledgers. Defaults to a directory in the local repository.
+     *
+     * @parameter expression="${ledgerDirectory}"
+     */
+    private File ledgerDirectory;
+
+    private final Map<String, DeploymentLedger> ledgers = new HashMap<String, DeploymentLedger>();
+
+    /**
+     * Set this to 'true' to write a JSON and a CSV report with the duration, size, throughput, number of attempts and
+     * outcome of every upload, pom resolution and pom filtering step.
+     *
+     * @parameter expression="${deployReport}" default-value="false"
+     */
+    private boolean deployReport;
+
+    /**
+     * Directory of the deploy reports.
+     *
+     * @parameter expression="${deployReportDirectory}" default-value="${project.build.directory}"
+     */
+    private File deployReportDirectory;
+
+    private final DeployMetrics metrics = new DeployMetrics();
+
+    /**
+     * Set this to 'true' to copy release artifacts into <code>file:</code> deployment repositories directly, instead
+     * of transferring them through the regular deployer.
+     *
+     * @parameter expression="${fileRepositoryFastPath}" default-value="false"
+     */
+    private boolean fileRepositoryFastPath;
+
+    /**
+     * Comma separated checksum algorithms to write next to the files copied by the <code>file:</code> fast path
+     * besides MD5 and SHA-1, like <code>SHA-256,SHA-512</code>.
+     *
+     * @parameter expression="${checksumAlgorithms}"
+     */
+    private String checksumAlgorithms;
+
+    /**
+     * Set this to 'true' to deploy all the artifacts of a groupId:artifactId:version together, so their
+     * <code>maven-metadata.xml</code> files are merged and uploaded once instead of once per artifact, and all
+     * snapshots of the version get the same timestamp and build number.
+     *
+     * @parameter expression="${batchMetadata}" default-value="false"
+     */
+    private boolean batchMetadata;
+
+    private volatile MetadataBatch metadataBatch;
+
+    /**
+     * @component
+     */
+    private RepositorySystem repositorySystem;
+
+    /**
+     * @parameter default-value="${repositorySystemSession}"
+     * @readonly
+     */
+    private RepositorySystemSession repositorySession;
+
+    /**
+     * Maximum number of bytes per second uploaded by all the deployments of the build together. The default does not
+     * limit the uploads.
+     *
+     * @parameter expression="${uploadBandwidth}" default-value="0"
+     */
+    private long uploadBandwidth;
+
+    /**
+     * Number of bytes that may be uploaded at full speed after the uploads were idle, before
+     * <code>uploadBandwidth</code> applies. Defaults to one second of <code>uploadBandwidth</code>.
+     *
+     * @parameter expression="${uploadBurstBytes}" default-value="0"
+     */
+    private long uploadBurstBytes;
+
+    /**
+     * Maximum number of transfer requests per second sent by all the deployments of the build together, like
+     * <code>0.5</code> for one request every two seconds. The default does not limit the requests.
+     *
+     * @parameter expression="${uploadRequestRate}" default-value="0"
+     */
+    private double uploadRequestRate;
+
+    /**
+     * Release artifacts of at least this many bytes are uploaded to <code>http:</code> and <code>https:</code>
+     * repositories in chunks, and an interrupted upload resumes from the chunks the repository acknowledged. The
+     * repository must accept <code>PUT</code> requests with a <code>Content-Range</code> header. The default uploads
+     * all artifacts in one piece.
+     *
+     * @parameter expression="${chunkedUploadThreshold}" default-value="0"
+     */
+    private long chunkedUploadThreshold;
+
+    /**
+     * Size of the chunks of a chunked upload, in bytes.
+     *
+     * @parameter expression="${uploadChunkSize}" default-value="8388608"
+     */
+    private int uploadChunkSize;
+
+    /**
+     * Number of chunks of a chunked upload sent at the same time, when the repository accepts them out of order.
+     *
+     * @parameter expression="${chunkedUploadThreads}" default-value="1"
+     */
+    private int chunkedUploadThreads;
+
+    /**
+     * How long a request of a chunked upload waits for the connection to the repository, in milliseconds.
+     *
+     * @parameter expression="${chunkedUploadConnectTimeout}" default-value="10000"
+     */
+    private int chunkedUploadConnectTimeout;
+
+    /**
+     * How long a request of a chunked upload waits for data from the repository, in milliseconds. A chunk that times
+     * out is sent again when the upload resumes.
+     *
+     * @parameter expression="${chunkedUploadReadTimeout}" default-value="60000"
+     */
+    private int chunkedUploadReadTimeout;
+
     /* Setters and Getters */
 
     public ArtifactDeployer getDeployer()
@@ -119,6 +346,332 @@ public abstract class AbstractDeployMojo
         }
     }
 
+    /**
+     * Creates an executor for the uploads of one mojo execution, sized after the <code>deployThreads</code>
+     * parameter. The caller is responsible for shutting it down.
+     *
+     * @param failureIsAnOption whether failing uploads should be logged and counted instead of aborting the deploy
+     * @return a new executor, never <code>null</code>
+     */
+    DeployExecutor newDeployExecutor( boolean failureIsAnOption )
+    {
+        return new DeployExecutor( getDeployThreads(), failureIsAnOption, getLog() );
+    }
+
+    /**
+     * @return whether failing uploads of this mojo are logged and counted instead of aborting the deploy
+     */
+    boolean isFailureIsAnOption()
+    {
+        return false;
+    }
+
+    /**
+     * @return the number of upload threads, at least 1
+     */
+    int getDeployThreads()
+    {
+        return Math.max( 1, deployThreads );
+    }
+
+    /**
+     * Orders items by size, largest first, keeping the order of items of the same size. Submitting uploads in this
+     * order to the upload threads is the longest processing time first schedule: the big uploads run side by side from
+     * the start and the small ones fill the gaps at the end, instead of a big upload started last running alone.
+     *
+     * @param items the items to sort
+     * @param sizes the size of every item, by identity
+     */
+    static <T> void sortLargestFirst( List<T> items, final Map<T, Long> sizes )
+    {
+        Collections.sort( items, new Comparator<T>()
+        {
+            public int compare( T a, T b )
+            {
+                long sizeA = sizes.get( a ).longValue();
+                long sizeB = sizes.get( b ).longValue();
+                return sizeA > sizeB ? -1 : ( sizeA < sizeB ? 1 : 0 );
+            }
+        } );
+    }
+
+    /**
+     * Starts checking in the background whether an artifact is already deployed, when skipping those is requested.
+     */
+    void prefetchChecksum( File source, Artifact artifact, ArtifactRepository deploymentRepository )
+    {
+        DeploymentLedger ledger = getDeploymentLedger( deploymentRepository );
+        File pomFile = ledger != null ? getPomFile( artifact ) : null;
+        if ( ledger != null && ledger.isUnchanged( source, pomFile, artifact ) )
+        {
+            // no need to probe, the deployment skips the artifact and reports it
+            return;
+        }
+
+        RemoteChecksumProbe probe = getChecksumProbe();
+        if ( probe != null )
+        {
+            probe.prefetch( source, artifact, deploymentRepository );
+        }
+    }
+
+    /**
+     * Stops the background checksum probes. Should be called once the mojo is done deploying.
+     */
+    synchronized void shutdownChecksumProbe()
+    {
+        if ( checksumProbe != null )
+        {
+            checksumProbe.shutdown();
+            checksumProbe = null;
+        }
+    }
+
+    private synchronized RemoteChecksumProbe getChecksumProbe()
+    {
+        if ( skipAlreadyDeployed && checksumProbe == null )
+        {
+            checksumProbe = new RemoteChecksumProbe( wagonManager, Math.max( 4, deployThreads ), getLog() );
+        }
+        return checksumProbe;
+    }
+
+    /**
+     * Closes the files of the deployment ledgers used by this mojo. Ledgers shared with other mojos open their file
+     * again on their next record.
+     */
+    synchronized void closeDeploymentLedgers()
+    {
+        for ( DeploymentLedger ledger : ledgers.values() )
+        {
+            ledger.close();
+        }
+        ledgers.clear();
+    }
+
+    private synchronized DeploymentLedger getDeploymentLedger( ArtifactRepository deploymentRepository )
+    {
+        if ( !useDeploymentLedger )
+        {
+            return null;
+        }
+
+        String key = deploymentRepository.getId() + '@' + deploymentRepository.getUrl();
+        DeploymentLedger ledger = ledgers.get( key );
+        if ( ledger == null )
+        {
+            File directory = ledgerDirectory;
+            if ( directory == null )
+            {
+                directory = new File( localRepository.getBasedir(), ".cache/maven-deploy-plugin/ledger" );
+            }
+            if ( session != null )
+            {
+                // one ledger per file for the whole build, so parallel modules do not append to it at the same time
+                DeploymentLedger.Registry registry = SessionScope.get( session, DeploymentLedger.Registry.class );
+                ledger = registry.get( directory, deploymentRepository.getId(), deploymentRepository.getUrl(),
+                                       getLog() );
+            }
+            else
+            {
+                ledger = new DeploymentLedger( directory, deploymentRepository.getId(), deploymentRepository.getUrl(),
+                                               getLog() );
+            }
+            ledgers.put( key, ledger );
+        }
+        return ledger;
+    }
+
+    /**
+     * @return <code>true</code> if the deployment ledger knows the artifact was deployed with the same files
+     */
+    boolean isUnchanged( File source, Artifact artifact, ArtifactRepository deploymentRepository )
+    {
+        DeploymentLedger ledger = getDeploymentLedger( deploymentRepository );
+        return ledger != null && ledger.isUnchanged( source, getPomFile( artifact ), artifact );
+    }
+
+    private static File getPomFile( Artifact artifact )
+    {
+        for ( Object metadata : artifact.getMetadataList() )
+        {
+            if ( metadata instanceof ProjectArtifactMetadata )
+            {
+                return ( (ProjectArtifactMetadata) metadata ).getFile();
+            }
+        }
+        return null;
+    }
+
+    private List<String> getChecksumAlgorithms()
+    {
+        List<String> algorithms = new ArrayList<String>();
+        if ( checksumAlgorithms != null )
+        {
+            for ( String algorithm : checksumAlgorithms.split( "," ) )
+            {
+                if ( algorithm.trim().length() > 0 )
+                {
+                    algorithms.add( algorithm.trim().toUpperCase( Locale.ENGLISH ) );
+                }
+            }
+        }
+        return algorithms;
+    }
+
+    /**
+     * @return the circuit breaker shared by all uploads to the repository in this build, or <code>null</code> when
+     *         it is disabled
+     */
+    private CircuitBreaker getCircuitBreaker( ArtifactRepository deploymentRepository )
+    {
+        if ( circuitBreakerThreshold <= 0 || session == null )
+        {
+            return null;
+        }
+
+        CircuitBreaker.Registry registry = SessionScope.get( session, CircuitBreaker.Registry.class );
+        return registry.get( deploymentRepository.getId() + '@' + deploymentRepository.getUrl(),
+                             circuitBreakerThreshold, Math.max( 0, circuitBreakerCoolDownMillis ) );
+    }
+
+    /**
+     * @return the upload throttle shared by all mojos of the build, or <code>null</code> when the uploads are not
+     *         limited
+     */
+    private UploadThrottle getUploadThrottle()
+    {
+        if ( ( uploadBandwidth <= 0 && uploadRequestRate <= 0 ) || session == null )
+        {
+            return null;
+        }
+
+        UploadThrottle throttle = SessionScope.get( session, UploadThrottle.class );
+        throttle.configure( uploadBandwidth, uploadBurstBytes, uploadRequestRate );
+        return throttle;
+    }
+
+    /**
+     * Waits for the upload throttle before a transfer the throttle cannot pace while it runs: the requests and all
+     * the bytes are taken up front.
+     */
+    private static void acquireUpfront( UploadThrottle throttle, File source, Artifact artifact )
+        throws ArtifactDeploymentException
+    {
+        File pomFile = getPomFile( artifact );
+        try
+        {
+            throttle.acquireRequest();
+            throttle.acquireBytes( source.length() );
+            if ( pomFile != null )
+            {
+                throttle.acquireRequest();
+                throttle.acquireBytes( pomFile.length() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ArtifactDeploymentException( "Interrupted while waiting for the upload throttle", e );
+        }
+    }
+
+    /**
+     * Waits until the circuit breaker lets an upload through, if pausing is requested.
+     *
+     * @return <code>false</code> if the upload must fail because the circuit is open
+     */
+    private boolean waitForCircuit( CircuitBreaker breaker, String description, ArtifactRepository repository )
+        throws ArtifactDeploymentException
+    {
+        long blocked = breaker.blockedFor();
+        while ( blocked > 0 && circuitBreakerPause )
+        {
+            getLog().info( "Holding back " + description + " for " + ( blocked / 1000 ) + "s, "
+                + repository.getId() + " failed " + breaker.getConsecutiveFailures() + " times in a row" );
+            sleep( blocked );
+            blocked = breaker.blockedFor();
+        }
+        return blocked <= 0;
+    }
+
+    /**
+     * @param retry the number of the retry, starting at 1
+     * @return the exponential delay before the retry, randomized between half and all of it
+     */
+    private long backoffDelay( int retry )
+    {
+        long delay = Math.max( 0, retryBackoffMillis );
+        for ( int i = 1; i < retry && delay < retryBackoffMaxMillis; i++ )
+        {
+            delay *= 2;
+        }
+        delay = Math.min( delay, Math.max( 0, retryBackoffMaxMillis ) );
+
+        long half = delay / 2;
+        synchronized ( jitter )
+        {
+            return half + (long) ( jitter.nextDouble() * ( delay - half ) );
+        }
+    }
+
+    private static void sleep( long millis )
+        throws ArtifactDeploymentException
+    {
+        if ( millis <= 0 )
+        {
+            return;
+        }
+        try
+        {
+            Thread.sleep( millis );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ArtifactDeploymentException( "Interrupted while waiting to deploy", e );
+        }
+    }
+
+    /**
+     * @return the metrics of this mojo execution
+     */
+    DeployMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * @return the directory of the deploy reports, may be <code>null</code>
+     */
+    File getDeployReportDirectory()
+    {
+        return deployReportDirectory;
+    }
+
+    /**
+     * Writes the deploy report, if requested. Should be called once the mojo is done deploying.
+     *
+     * @param name the base name of the report files
+     */
+    void writeDeployReport( String name )
+    {
+        if ( !deployReport || deployReportDirectory == null )
+        {
+            return;
+        }
+
+        try
+        {
+            metrics.writeReports( deployReportDirectory, name );
+            getLog().info( "Deploy report written to " + new File( deployReportDirectory, name + ".json" ) );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Could not write the deploy report: " + e.getMessage() );
+        }
+    }
+
     ArtifactRepositoryLayout getLayout( String id )
         throws MojoExecutionException
     {
@@ -145,10 +698,260 @@ public abstract class AbstractDeployMojo
                            ArtifactRepository localRepository )
         throws ArtifactDeploymentException
     {
+        MetadataBatch batch = metadataBatch;
+        if ( batch != null && isBatchable( artifact, deploymentRepository ) )
+        {
+            batch.add( source, artifact, deploymentRepository );
+            return;
+        }
+
+        DeployMetrics.Sample sample = metrics.start( DeployMetrics.DEPLOY, artifact.getId() );
+        try
+        {
+            deploy( source, artifact, deploymentRepository, localRepository, sample );
+        }
+        finally
+        {
+            // only counts when the deployment did not finish the sample itself
+            sample.finish( "failed" );
+        }
+    }
+
+    private void deploy( final File source, final Artifact artifact, final ArtifactRepository deploymentRepository,
+                         final ArtifactRepository localRepository, DeployMetrics.Sample sample )
+        throws ArtifactDeploymentException
+    {
+        if ( isAlreadyDeployed( source, artifact, deploymentRepository, sample ) )
+        {
+            return;
+        }
+
+        // created once, so the retries resume from the chunks acknowledged by the previous attempts
+        final ChunkedUploader chunkedUploader = newChunkedUploader( source, artifact, deploymentRepository );
+
+        transfer( artifact.getId(), deploymentRepository, Collections.singletonList( sample ), new Transfer()
+        {
+            public void run()
+                throws ArtifactDeploymentException
+            {
+                UploadThrottle throttle = getUploadThrottle();
+                if ( chunkedUploader != null )
+                {
+                    deployChunked( chunkedUploader, source, artifact, deploymentRepository );
+                }
+                else if ( fileRepositoryFastPath && FileRepositoryDeployer.supports( artifact, deploymentRepository ) )
+                {
+                    FileRepositoryDeployer fileDeployer =
+                        new FileRepositoryDeployer( getChecksumAlgorithms(), throttle, getLog() );
+                    fileDeployer.deploy( source, artifact, deploymentRepository );
+                }
+                else if ( throttle != null && !artifact.isSnapshot() && repositorySystem != null
+                    && repositorySession != null && MetadataBatch.supports( artifact ) )
+                {
+                    // the regular deployer cannot be paced while it uploads, the repository system can through the
+                    // transfer listener of its session; it is what the regular deployer calls anyway. Snapshots stay
+                    // with the regular deployer, which keeps the snapshot metadata from one artifact to the next so
+                    // the main artifact, its pom and its attached artifacts get the same timestamp and build number
+                    MetadataBatch.deploy( repositorySystem, throttle.throttle( repositorySession ),
+                                          Collections.singletonList( new MetadataBatch.Item( source, artifact,
+                                                                                             deploymentRepository ) ) );
+                }
+                else
+                {
+                    if ( throttle != null )
+                    {
+                        acquireUpfront( throttle, source, artifact );
+                    }
+                    getDeployer().deploy( source, artifact, deploymentRepository, localRepository );
+                }
+            }
+        } );
+        sample.setBytes( source.length() );
+        sample.finish( "deployed" );
+
+        recordDeployment( source, artifact, deploymentRepository );
+    }
+
+    /**
+     * @return the uploader of a large release artifact, or <code>null</code> if the artifact is deployed in one piece
+     */
+    private ChunkedUploader newChunkedUploader( File source, Artifact artifact,
+                                                ArtifactRepository deploymentRepository )
+        throws ArtifactDeploymentException
+    {
+        String protocol = deploymentRepository.getProtocol();
+        if ( chunkedUploadThreshold <= 0 || source.length() < chunkedUploadThreshold || artifact.isSnapshot()
+            || !( "http".equals( protocol ) || "https".equals( protocol ) ) || repositorySystem == null
+            || repositorySession == null || !MetadataBatch.supports( artifact ) )
+        {
+            return null;
+        }
+        // the pom deployed after the artifact updates the maven-metadata.xml, classified artifacts do not need that
+        if ( getPomFile( artifact ) == null && !artifact.hasClassifier() )
+        {
+            return null;
+        }
+
+        String username = null;
+        String password = null;
+        if ( deploymentRepository.getAuthentication() != null )
+        {
+            username = deploymentRepository.getAuthentication().getUsername();
+            password = deploymentRepository.getAuthentication().getPassword();
+        }
+        else
+        {
+            Authentication authentication = repositorySession.getAuthenticationSelector().getAuthentication(
+                RepositoryUtils.toRepo( deploymentRepository ) );
+            if ( authentication != null )
+            {
+                username = authentication.getUsername();
+                password = authentication.getPassword();
+            }
+        }
+
+        ChunkedUploader uploader =
+            new ChunkedUploader( toUrl( deploymentRepository, deploymentRepository.pathOf( artifact ) ), source,
+                                 uploadChunkSize, chunkedUploadThreads, username, password, getUploadThrottle(),
+                                 getLog() );
+        uploader.setTimeouts( chunkedUploadConnectTimeout, chunkedUploadReadTimeout );
+        return uploader;
+    }
+
+    /**
+     * Uploads a large artifact in chunks, then its checksums, then its pom through the repository system, which
+     * updates the <code>maven-metadata.xml</code> of the artifact.
+     */
+    private void deployChunked( ChunkedUploader uploader, File source, Artifact artifact,
+                                ArtifactRepository deploymentRepository )
+        throws ArtifactDeploymentException
+    {
+        String path = deploymentRepository.pathOf( artifact );
+        try
+        {
+            getLog().info( "Uploading " + artifact.getId() + " in chunks of " + uploadChunkSize + " bytes" );
+            uploader.upload();
+            Map<String, String> digests = ChecksumUtils.digests( source, getChecksumAlgorithms() );
+            for ( Map.Entry<String, String> digest : digests.entrySet() )
+            {
+                uploader.put( toUrl( deploymentRepository, path + '.' + ChecksumUtils.extension( digest.getKey() ) ),
+                              digest.getValue().getBytes( "US-ASCII" ) );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new ArtifactDeploymentException( "Error uploading " + artifact.getId() + " to "
+                + deploymentRepository.getUrl() + ": " + e.getMessage(), e );
+        }
+
+        File pomFile = getPomFile( artifact );
+        if ( pomFile != null )
+        {
+            Artifact pom = new DefaultArtifact( artifact.getGroupId(), artifact.getArtifactId(),
+                                                artifact.getBaseVersion(), null, "pom", null,
+                                                new DefaultArtifactHandler( "pom" ) );
+            UploadThrottle throttle = getUploadThrottle();
+            MetadataBatch.deploy( repositorySystem, throttle != null ? throttle.throttle( repositorySession )
+                : repositorySession, Collections.singletonList( new MetadataBatch.Item( pomFile, pom,
+                                                                                        deploymentRepository ) ) );
+        }
+    }
+
+    private static URL toUrl( ArtifactRepository repository, String path )
+        throws ArtifactDeploymentException
+    {
+        String url = repository.getUrl();
+        try
+        {
+            return new URL( url.endsWith( "/" ) ? url + path : url + '/' + path );
+        }
+        catch ( MalformedURLException e )
+        {
+            throw new ArtifactDeploymentException( "Invalid repository url " + url + ": " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Checks the deployment ledger and the remote checksums, when enabled, and finishes the sample when the artifact
+     * does not need to be deployed.
+     *
+     * @return <code>true</code> if the artifact must be skipped
+     */
+    private boolean isAlreadyDeployed( File source, Artifact artifact, ArtifactRepository deploymentRepository,
+                                       DeployMetrics.Sample sample )
+    {
+        DeploymentLedger ledger = getDeploymentLedger( deploymentRepository );
+        File pomFile = ledger != null ? getPomFile( artifact ) : null;
+        if ( ledger != null && ledger.isUnchanged( source, pomFile, artifact ) )
+        {
+            getLog().info( "Skipping " + artifact.getId() + ", it did not change since it was last deployed" );
+            sample.finish( "unchanged" );
+            return true;
+        }
+
+        RemoteChecksumProbe probe = getChecksumProbe();
+        if ( probe != null && probe.isDeployed( source, artifact, deploymentRepository ) )
+        {
+            getLog().info( "Skipping " + artifact.getId() + ", the repository already has it with the same checksum" );
+            if ( ledger != null )
+            {
+                ledger.record( source, pomFile, artifact );
+            }
+            sample.finish( "present" );
+            return true;
+        }
+        return false;
+    }
+
+    private void recordDeployment( File source, Artifact artifact, ArtifactRepository deploymentRepository )
+    {
+        DeploymentLedger ledger = getDeploymentLedger( deploymentRepository );
+        if ( ledger != null )
+        {
+            ledger.record( source, getPomFile( artifact ), artifact );
+        }
+    }
+
+    /**
+     * One upload to a repository, retried as a whole.
+     */
+    private interface Transfer
+    {
+        void run()
+            throws ArtifactDeploymentException;
+    }
+
+    /**
+     * Runs an upload with the configured retries, backoff and circuit breaker.
+     *
+     * @param description what is uploaded, for the log
+     * @param samples the samples counting the attempts
+     */
+    private void transfer( String description, ArtifactRepository deploymentRepository,
+                           List<DeployMetrics.Sample> samples, Transfer transfer )
+        throws ArtifactDeploymentException
+    {
+        CircuitBreaker breaker = getCircuitBreaker( deploymentRepository );
         int retryFailedDeploymentCount = Math.max( 1, Math.min( 10, this.retryFailedDeploymentCount ) );
         ArtifactDeploymentException exception = null;
         for ( int count = 0; count < retryFailedDeploymentCount; count++ )
         {
+            if ( count > 0 )
+            {
+                sleep( backoffDelay( count ) );
+            }
+            if ( breaker != null && !waitForCircuit( breaker, description, deploymentRepository ) )
+            {
+                if ( exception == null )
+                {
+                    exception = new ArtifactDeploymentException( "Not deploying " + description + ", "
+                        + deploymentRepository.getId() + " failed " + breaker.getConsecutiveFailures()
+                        + " times in a row (circuitBreakerThreshold)" );
+                }
+                break;
+            }
+
+            boolean transferred = false;
             try
             {
                 if (count > 0)
@@ -156,8 +959,13 @@ public abstract class AbstractDeployMojo
                     getLog().info(
                         "Retrying deployment attempt " + ( count + 1 ) + " of " + retryFailedDeploymentCount );
                 }
-                getLog().debug("ordering deploy of " + artifact.getId());
-                getDeployer().deploy( source, artifact, deploymentRepository, localRepository );
+                getLog().debug("ordering deploy of " + description);
+                for ( DeployMetrics.Sample sample : samples )
+                {
+                    sample.addAttempt();
+                }
+                transfer.run();
+                transferred = true;
                 exception = null;
                 break;
             }
@@ -172,10 +980,172 @@ public abstract class AbstractDeployMojo
                     exception = e;
                 }
             }
+            finally
+            {
+                // also on runtime exceptions, which would otherwise keep the trial of a half open circuit running
+                if ( breaker != null )
+                {
+                    if ( transferred )
+                    {
+                        breaker.success();
+                    }
+                    else
+                    {
+                        breaker.failure();
+                    }
+                }
+            }
         }
         if ( exception != null )
         {
             throw exception;
         }
     }
+
+    /**
+     * Starts collecting the artifacts passed to {@link #deploy(File, Artifact, ArtifactRepository, ArtifactRepository)}
+     * instead of deploying them, when batchMetadata is set. They are deployed by
+     * {@link #flushMetadataBatch(DeployExecutor)}.
+     */
+    void beginMetadataBatch()
+    {
+        if ( batchMetadata )
+        {
+            metadataBatch = new MetadataBatch();
+        }
+    }
+
+    /**
+     * Deploys the artifacts collected since {@link #beginMetadataBatch()}, one group of artifacts with the same
+     * groupId, artifactId and version per task. The caller waits for the executor.
+     */
+    void flushMetadataBatch( DeployExecutor executor )
+        throws MojoExecutionException
+    {
+        MetadataBatch batch = metadataBatch;
+        metadataBatch = null;
+        if ( batch == null )
+        {
+            return;
+        }
+
+        // the groups with the most bytes first, like the single uploads
+        List<List<MetadataBatch.Item>> groups = batch.getGroups();
+        Map<List<MetadataBatch.Item>, Long> sizes = new IdentityHashMap<List<MetadataBatch.Item>, Long>();
+        for ( List<MetadataBatch.Item> group : groups )
+        {
+            long size = 0;
+            for ( MetadataBatch.Item item : group )
+            {
+                size += item.source != null ? item.source.length() : 0;
+            }
+            sizes.put( group, Long.valueOf( size ) );
+        }
+        sortLargestFirst( groups, sizes );
+
+        for ( final List<MetadataBatch.Item> group : groups )
+        {
+            final String description = MetadataBatch.describe( group );
+            // the executor may be shared with mojos of other projects (deployAtEnd), the failure policy is ours
+            executor.submit( description, new DeployExecutor.Task()
+            {
+                public void execute()
+                    throws MojoExecutionException
+                {
+                    try
+                    {
+                        deployGroup( group );
+                    }
+                    catch ( ArtifactDeploymentException e )
+                    {
+                        throw new MojoExecutionException( "Failed to deploy " + description, e );
+                    }
+                }
+            }, isFailureIsAnOption() );
+        }
+    }
+
+    /**
+     * Deploys artifacts with the same groupId, artifactId and version. With batchMetadata they are deployed in a
+     * single request, which merges and uploads their metadata once and gives all snapshots the same timestamp and
+     * build number; otherwise they are deployed one after the other.
+     */
+    void deployGroup( List<MetadataBatch.Item> group )
+        throws ArtifactDeploymentException
+    {
+        boolean batchable = batchMetadata && repositorySystem != null && repositorySession != null;
+        for ( MetadataBatch.Item item : group )
+        {
+            batchable &= isBatchable( item.artifact, item.repository );
+        }
+        if ( !batchable )
+        {
+            for ( MetadataBatch.Item item : group )
+            {
+                deploy( item.source, item.artifact, item.repository, getLocalRepository() );
+            }
+            return;
+        }
+
+        final List<MetadataBatch.Item> items = new ArrayList<MetadataBatch.Item>();
+        List<DeployMetrics.Sample> samples = new ArrayList<DeployMetrics.Sample>();
+        try
+        {
+            for ( MetadataBatch.Item item : group )
+            {
+                DeployMetrics.Sample sample = metrics.start( DeployMetrics.DEPLOY, item.artifact.getId() );
+                samples.add( sample );
+                if ( !isAlreadyDeployed( item.source, item.artifact, item.repository, sample ) )
+                {
+                    items.add( item );
+                }
+            }
+            if ( items.isEmpty() )
+            {
+                return;
+            }
+
+            transfer( MetadataBatch.describe( items ), items.get( 0 ).repository, samples, new Transfer()
+            {
+                public void run()
+                    throws ArtifactDeploymentException
+                {
+                    UploadThrottle throttle = getUploadThrottle();
+                    MetadataBatch.deploy( repositorySystem, throttle != null ? throttle.throttle( repositorySession )
+                        : repositorySession, items );
+                }
+            } );
+
+            for ( int i = 0, j = 0; i < group.size(); i++ )
+            {
+                MetadataBatch.Item item = group.get( i );
+                if ( j < items.size() && items.get( j ) == item )
+                {
+                    j++;
+                    samples.get( i ).setBytes( item.source.length() );
+                    samples.get( i ).finish( "deployed" );
+                    recordDeployment( item.source, item.artifact, item.repository );
+                }
+            }
+        }
+        finally
+        {
+            for ( DeployMetrics.Sample sample : samples )
+            {
+                sample.finish( "failed" );
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the artifact can be deployed with others of its version in one request
+     */
+    private boolean isBatchable( Artifact artifact, ArtifactRepository deploymentRepository )
+    {
+        if ( fileRepositoryFastPath && FileRepositoryDeployer.supports( artifact, deploymentRepository ) )
+        {
+            return false;
+        }
+        return MetadataBatch.supports( artifact );
+    }
 }
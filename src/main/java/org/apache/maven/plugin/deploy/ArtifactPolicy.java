@@ -0,0 +1,255 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Decides which artifact ids may be deployed according to the black and white list patterns. An id is refused when
+ * it matches any black list pattern, or when it does not match every white list pattern.
+ * <p/>
+ * Patterns that are a literal prefix followed by <code>.*</code>, like <code>com.mycompany.secret.*</code>, are
+ * matched with a trie in a single walk over the id, where an unescaped dot matches any character just like in the
+ * regular expression. The other black list patterns are combined into a single alternation. Decisions are
+ * remembered per artifact id.
+ *
+ * @version $Id$
+ */
+class ArtifactPolicy
+{
+    private static final Pattern LITERAL_PREFIX = Pattern.compile( "(?:[A-Za-z0-9_:-]|\\\\\\.|\\.)+\\.\\*" );
+
+    private static final Pattern BACK_REFERENCE = Pattern.compile( "\\\\[1-9]" );
+
+    private final List<Pattern> blackList = new ArrayList<Pattern>();
+
+    private final List<Pattern> whiteList = new ArrayList<Pattern>();
+
+    private final PrefixTrie blackPrefixes = new PrefixTrie();
+
+    private final List<Pattern> blackPatterns = new ArrayList<Pattern>();
+
+    private final List<PrefixTrie> whitePrefixes = new ArrayList<PrefixTrie>();
+
+    private final List<Pattern> whitePatterns = new ArrayList<Pattern>();
+
+    private final Map<String, Boolean> decisions = new ConcurrentHashMap<String, Boolean>();
+
+    private final Log log;
+
+    /**
+     * @param blackListPatterns the black list regular expressions, or <code>null</code>
+     * @param whiteListPatterns the white list regular expressions, or <code>null</code>
+     * @param log where to report the patterns and the refused artifacts
+     */
+    ArtifactPolicy( List<String> blackListPatterns, List<String> whiteListPatterns, Log log )
+    {
+        this.log = log;
+
+        List<String> alternatives = new ArrayList<String>();
+        if ( blackListPatterns != null )
+        {
+            for ( String black : blackListPatterns )
+            {
+                log.debug( "Adding black list pattern: " + black );
+                blackList.add( Pattern.compile( black ) );
+                if ( LITERAL_PREFIX.matcher( black ).matches() )
+                {
+                    blackPrefixes.add( black.substring( 0, black.length() - 2 ) );
+                }
+                else if ( BACK_REFERENCE.matcher( black ).find() )
+                {
+                    // group numbers would shift inside an alternation
+                    blackPatterns.add( Pattern.compile( black ) );
+                }
+                else
+                {
+                    alternatives.add( "(?:" + black + ")" );
+                }
+            }
+        }
+        if ( !alternatives.isEmpty() )
+        {
+            StringBuilder alternation = new StringBuilder();
+            for ( String alternative : alternatives )
+            {
+                alternation.append( alternation.length() == 0 ? "" : "|" ).append( alternative );
+            }
+            blackPatterns.add( Pattern.compile( alternation.toString() ) );
+        }
+
+        if ( whiteListPatterns != null )
+        {
+            for ( String white : whiteListPatterns )
+            {
+                log.debug( "Adding white list pattern: " + white );
+                whiteList.add( Pattern.compile( white ) );
+                if ( LITERAL_PREFIX.matcher( white ).matches() )
+                {
+                    PrefixTrie prefix = new PrefixTrie();
+                    prefix.add( white.substring( 0, white.length() - 2 ) );
+                    whitePrefixes.add( prefix );
+                }
+                else
+                {
+                    whitePatterns.add( Pattern.compile( white ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * @param id the id of the artifact, <code>groupId:artifactId:type:classifier:version</code>
+     * @return <code>true</code> if the artifact may be deployed
+     */
+    boolean isAuthorized( String id )
+    {
+        Boolean decision = decisions.get( id );
+        if ( decision == null )
+        {
+            decision = Boolean.valueOf( decide( id ) );
+            decisions.put( id, decision );
+        }
+        return decision.booleanValue();
+    }
+
+    private boolean decide( String id )
+    {
+        boolean refused = blackPrefixes.matches( id );
+        for ( int i = 0; !refused && i < blackPatterns.size(); i++ )
+        {
+            refused = blackPatterns.get( i ).matcher( id ).matches();
+        }
+        if ( refused )
+        {
+            log.debug( id + " matches blacklist pattern " + firstMatching( blackList, id, true ) );
+            return false;
+        }
+
+        boolean allowed = true;
+        for ( int i = 0; allowed && i < whitePrefixes.size(); i++ )
+        {
+            allowed = whitePrefixes.get( i ).matches( id );
+        }
+        for ( int i = 0; allowed && i < whitePatterns.size(); i++ )
+        {
+            allowed = whitePatterns.get( i ).matcher( id ).matches();
+        }
+        if ( !allowed )
+        {
+            log.debug( id + " not matches whitelist pattern " + firstMatching( whiteList, id, false ) );
+        }
+        return allowed;
+    }
+
+    /**
+     * Finds the original pattern behind a decision, for the log.
+     */
+    private static Pattern firstMatching( List<Pattern> patterns, String id, boolean matching )
+    {
+        for ( Pattern pattern : patterns )
+        {
+            if ( pattern.matcher( id ).matches() == matching )
+            {
+                return pattern;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A trie of literal prefixes in which an unescaped dot is a wildcard edge.
+     */
+    private static class PrefixTrie
+    {
+        private final Map<Character, PrefixTrie> children = new HashMap<Character, PrefixTrie>();
+
+        private PrefixTrie anyChild;
+
+        private boolean terminal;
+
+        private boolean isEmpty = true;
+
+        /**
+         * @param prefix the literal part of a pattern, where <code>\.</code> is a dot and <code>.</code> any
+         * character
+         */
+        void add( String prefix )
+        {
+            isEmpty = false;
+            PrefixTrie node = this;
+            for ( int i = 0; i < prefix.length(); i++ )
+            {
+                char c = prefix.charAt( i );
+                if ( c == '.' )
+                {
+                    if ( node.anyChild == null )
+                    {
+                        node.anyChild = new PrefixTrie();
+                    }
+                    node = node.anyChild;
+                    continue;
+                }
+                if ( c == '\\' )
+                {
+                    c = prefix.charAt( ++i );
+                }
+                PrefixTrie child = node.children.get( Character.valueOf( c ) );
+                if ( child == null )
+                {
+                    child = new PrefixTrie();
+                    node.children.put( Character.valueOf( c ), child );
+                }
+                node = child;
+            }
+            node.terminal = true;
+        }
+
+        boolean matches( String id )
+        {
+            return !isEmpty && matches( id, 0 );
+        }
+
+        private boolean matches( String id, int index )
+        {
+            if ( terminal )
+            {
+                return true;
+            }
+            if ( index >= id.length() )
+            {
+                return false;
+            }
+            PrefixTrie child = children.get( Character.valueOf( id.charAt( index ) ) );
+            if ( child != null && child.matches( id, index + 1 ) )
+            {
+                return true;
+            }
+            return anyChild != null && anyChild.matches( id, index + 1 );
+        }
+    }
+}
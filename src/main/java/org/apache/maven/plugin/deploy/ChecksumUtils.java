@@ -0,0 +1,271 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Computes the checksums the plugin uses to recognize files it has seen before. All the digests of a file are
+ * computed together in a single pass, large files through memory mapped windows, and they are remembered by path,
+ * size and modification time so the ledger, the remote checksum probes, the pom cache and every retry or further
+ * target repository of the same file do not read it again.
+ *
+ * @version $Id$
+ */
+final class ChecksumUtils
+{
+    static final String MD5 = "MD5";
+
+    static final String SHA1 = "SHA-1";
+
+    /**
+     * The digests that are always computed, as the repository layout wants them next to every file anyway.
+     */
+    private static final Collection<String> DEFAULT_ALGORITHMS = Arrays.asList( MD5, SHA1 );
+
+    /**
+     * Files up to this size are read into a heap buffer, mapping them costs more than it saves.
+     */
+    private static final int MAP_THRESHOLD = 1024 * 1024;
+
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    /**
+     * The digests are updated one slice of a mapped window at a time, so every slice is still in the CPU cache when
+     * the next digest reads it.
+     */
+    private static final int SLICE = 256 * 1024;
+
+    private static final int MAX_CACHED_FILES = 4096;
+
+    private static final Map<String, CachedDigests> CACHE = new LinkedHashMap<String, CachedDigests>( 16, 0.75f, true )
+    {
+        protected boolean removeEldestEntry( Map.Entry<String, CachedDigests> eldest )
+        {
+            return size() > MAX_CACHED_FILES;
+        }
+    };
+
+    private ChecksumUtils()
+    {
+    }
+
+    /**
+     * @param file the file to digest, must not be <code>null</code>
+     * @return the lower case hexadecimal SHA-1 of the file contents
+     * @throws IOException if the file cannot be read
+     */
+    static String sha1( File file )
+        throws IOException
+    {
+        return digests( file, Collections.<String>emptySet() ).get( SHA1 );
+    }
+
+    /**
+     * Returns the digests of a file, computing the missing ones in a single pass.
+     *
+     * @param file the file to digest, must not be <code>null</code>
+     * @param algorithms the digest algorithms wanted besides MD5 and SHA-1, like <code>SHA-256</code>
+     * @return the lower case hexadecimal digests by algorithm name, including MD5 and SHA-1
+     * @throws IOException if the file cannot be read
+     */
+    static Map<String, String> digests( File file, Collection<String> algorithms )
+        throws IOException
+    {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        Set<String> wanted = new LinkedHashSet<String>( DEFAULT_ALGORITHMS );
+        wanted.addAll( algorithms );
+
+        CachedDigests cached;
+        synchronized ( CACHE )
+        {
+            cached = CACHE.get( key );
+        }
+        if ( cached != null && cached.size == size && cached.lastModified == lastModified )
+        {
+            if ( cached.digests.keySet().containsAll( wanted ) )
+            {
+                return cached.digests;
+            }
+            // compute the new ones along with the known ones, so they stay in one entry
+            wanted.addAll( cached.digests.keySet() );
+        }
+
+        Map<String, String> digests = compute( file, size, wanted );
+        synchronized ( CACHE )
+        {
+            CACHE.put( key, new CachedDigests( size, lastModified, digests ) );
+        }
+        return digests;
+    }
+
+    /**
+     * Computes the digests of content that is not in a file yet. Nothing is cached.
+     *
+     * @param content the bytes to digest
+     * @param algorithms the digest algorithms wanted besides MD5 and SHA-1
+     * @return the lower case hexadecimal digests by algorithm name, including MD5 and SHA-1
+     */
+    static Map<String, String> digests( byte[] content, Collection<String> algorithms )
+    {
+        Set<String> wanted = new LinkedHashSet<String>( DEFAULT_ALGORITHMS );
+        wanted.addAll( algorithms );
+
+        MessageDigest[] digests = newDigests( wanted );
+        update( digests, ByteBuffer.wrap( content ) );
+        return toMap( digests );
+    }
+
+    private static Map<String, String> compute( File file, long size, Collection<String> algorithms )
+        throws IOException
+    {
+        MessageDigest[] digests = newDigests( algorithms );
+
+        FileInputStream in = new FileInputStream( file );
+        try
+        {
+            FileChannel channel = in.getChannel();
+            if ( size <= MAP_THRESHOLD )
+            {
+                ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+                while ( channel.read( buffer ) >= 0 )
+                {
+                    buffer.flip();
+                    update( digests, buffer );
+                    buffer.clear();
+                }
+            }
+            else
+            {
+                for ( long position = 0; position < size; position += MAP_WINDOW )
+                {
+                    MappedByteBuffer window =
+                        channel.map( FileChannel.MapMode.READ_ONLY, position, Math.min( MAP_WINDOW, size - position ) );
+                    for ( int slice = 0; slice < window.limit(); slice += SLICE )
+                    {
+                        window.limit( Math.min( window.capacity(), slice + SLICE ) ).position( slice );
+                        update( digests, window );
+                        window.limit( window.capacity() );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        return toMap( digests );
+    }
+
+    private static MessageDigest[] newDigests( Collection<String> algorithms )
+    {
+        MessageDigest[] digests = new MessageDigest[algorithms.size()];
+        int index = 0;
+        for ( String algorithm : algorithms )
+        {
+            try
+            {
+                digests[index++] = MessageDigest.getInstance( algorithm );
+            }
+            catch ( NoSuchAlgorithmException e )
+            {
+                throw new IllegalArgumentException( "Unsupported checksum algorithm " + algorithm );
+            }
+        }
+        return digests;
+    }
+
+    private static Map<String, String> toMap( MessageDigest[] digests )
+    {
+        Map<String, String> result = new HashMap<String, String>();
+        for ( MessageDigest digest : digests )
+        {
+            result.put( digest.getAlgorithm(), toHex( digest.digest() ) );
+        }
+        return Collections.unmodifiableMap( result );
+    }
+
+    private static void update( MessageDigest[] digests, ByteBuffer buffer )
+    {
+        int position = buffer.position();
+        for ( MessageDigest digest : digests )
+        {
+            buffer.position( position );
+            digest.update( buffer );
+        }
+    }
+
+    /**
+     * @return the extension of the checksum files of an algorithm, like <code>sha1</code> for <code>SHA-1</code>
+     */
+    static String extension( String algorithm )
+    {
+        return algorithm.toLowerCase( Locale.ENGLISH ).replace( "-", "" );
+    }
+
+    static String toHex( byte[] bytes )
+    {
+        StringBuilder buffer = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes )
+        {
+            buffer.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) );
+            buffer.append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return buffer.toString();
+    }
+
+    private static class CachedDigests
+    {
+        private final long size;
+
+        private final long lastModified;
+
+        private final Map<String, String> digests;
+
+        private CachedDigests( long size, long lastModified, Map<String, String> digests )
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digests = digests;
+        }
+    }
+}
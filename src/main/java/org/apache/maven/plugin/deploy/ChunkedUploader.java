@@ -0,0 +1,590 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Uploads a large file to an HTTP repository in chunks, and resumes an interrupted upload instead of starting over.
+ * Every chunk is sent with its own <code>PUT</code> request carrying a <code>Content-Range: bytes
+ * first-last/total</code> header; a <code>2xx</code> or <code>308</code> answer acknowledges the chunk. The
+ * acknowledged chunks are remembered, so after a failure, by this uploader or by the next retry of the deployment, only
+ * the missing chunks are sent again.
+ * <p/>
+ * Before resuming, the server is asked for the bytes it confirmed with a <code>PUT</code> of no data and a
+ * <code>Content-Range: bytes *&#47;total</code> header. A server that answers <code>308</code> with a
+ * <code>Range: bytes=0-last</code> header is trusted over the local bookkeeping; other servers are not asked again.
+ * <p/>
+ * With several threads the chunks are sent in parallel. A server that rejects a chunk starting past the bytes it
+ * holds, with <code>409</code> or <code>416</code>, gets the remaining chunks one after the other. Once all chunks are
+ * acknowledged a <code>HEAD</code> request checks the size of the file on the server, which catches repositories that
+ * ignore the <code>Content-Range</code> header and store every chunk as the whole file.
+ *
+ * @version $Id$
+ */
+class ChunkedUploader
+{
+    /**
+     * The status of the answer to a status query of an incomplete upload.
+     */
+    static final int RESUME_INCOMPLETE = 308;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of failures in a row without progress after which an upload gives up. The first failure is tried
+     * again at once, after asking the server which bytes it holds.
+     */
+    private static final int MAX_STALLED = 2;
+
+    private static final Pattern RANGE = Pattern.compile( "bytes=0-(\\d+)" );
+
+    private final URL url;
+
+    private final File file;
+
+    private final int chunkSize;
+
+    private final int threads;
+
+    private final String authorization;
+
+    private final UploadThrottle throttle;
+
+    private final Log log;
+
+    private final BitSet acknowledged = new BitSet();
+
+    private long size = -1;
+
+    private long lastModified;
+
+    private int chunkCount;
+
+    private boolean sequential;
+
+    private boolean statusQueries = true;
+
+    private int connectTimeout = 10000;
+
+    private int readTimeout = 60000;
+
+    /**
+     * @param url where to upload the file
+     * @param file the file to upload
+     * @param chunkSize the size of the chunks, in bytes
+     * @param threads the number of chunks sent at the same time
+     * @param username the user to authenticate as, may be <code>null</code>
+     * @param password the password of the user, may be <code>null</code>
+     * @param throttle limits the upload rate, may be <code>null</code>
+     * @param log where to report the progress
+     */
+    ChunkedUploader( URL url, File file, int chunkSize, int threads, String username, String password,
+                     UploadThrottle throttle, Log log )
+    {
+        this.url = url;
+        this.file = file;
+        this.chunkSize = Math.max( 1, chunkSize );
+        this.threads = Math.max( 1, threads );
+        this.authorization =
+            username != null ? "Basic " + base64( username + ':' + ( password != null ? password : "" ) ) : null;
+        this.throttle = throttle;
+        this.log = log;
+    }
+
+    /**
+     * Sets how long a request may wait for the connection and for the answer of the server. A request that times out
+     * fails like a dropped connection, so the upload resumes instead of hanging on a stalled link.
+     *
+     * @param connectTimeout the connect timeout, in milliseconds
+     * @param readTimeout the read timeout, in milliseconds
+     */
+    void setTimeouts( int connectTimeout, int readTimeout )
+    {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Uploads the chunks that were not acknowledged yet. A failure that still got chunks acknowledged is resumed right
+     * away, only repeated failures without any progress are thrown.
+     *
+     * @throws IOException if the upload failed without progress, or the server does not hold the whole file once
+     *             all the chunks were acknowledged
+     */
+    void upload()
+        throws IOException
+    {
+        if ( file.length() != size || file.lastModified() != lastModified )
+        {
+            // a changed file starts over
+            size = file.length();
+            lastModified = file.lastModified();
+            chunkCount = (int) ( ( size + chunkSize - 1 ) / chunkSize );
+            acknowledged.clear();
+        }
+
+        boolean resume = getAcknowledgedCount() > 0;
+        int stalled = 0;
+        while ( true )
+        {
+            if ( resume )
+            {
+                synchronizeWithServer();
+            }
+
+            int before = getAcknowledgedCount();
+            try
+            {
+                sendChunks();
+                verify();
+                return;
+            }
+            catch ( IOException e )
+            {
+                stalled = getAcknowledgedCount() > before ? 0 : stalled + 1;
+                if ( stalled >= MAX_STALLED )
+                {
+                    throw e;
+                }
+                log.warn( "Upload of " + url + " interrupted with " + getAcknowledgedCount() + " of " + chunkCount
+                    + " chunks acknowledged, resuming: " + e.getMessage() );
+                resume = true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of chunks the server acknowledged
+     */
+    synchronized int getAcknowledgedCount()
+    {
+        return acknowledged.cardinality();
+    }
+
+    private synchronized void acknowledge( int chunk )
+    {
+        acknowledged.set( chunk );
+    }
+
+    private synchronized List<Integer> getPendingChunks()
+    {
+        List<Integer> pending = new ArrayList<Integer>();
+        for ( int chunk = acknowledged.nextClearBit( 0 ); chunk < chunkCount;
+            chunk = acknowledged.nextClearBit( chunk + 1 ) )
+        {
+            pending.add( Integer.valueOf( chunk ) );
+        }
+        return pending;
+    }
+
+    private void sendChunks()
+        throws IOException
+    {
+        if ( threads > 1 && !sequential )
+        {
+            sendInParallel( getPendingChunks() );
+        }
+        for ( Integer chunk : getPendingChunks() )
+        {
+            sendChunk( chunk.intValue() );
+        }
+    }
+
+    private void sendInParallel( List<Integer> chunks )
+        throws IOException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool( threads, new DeployThreadFactory( "chunk-upload" ) );
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for ( final Integer chunk : chunks )
+            {
+                futures.add( pool.submit( new Callable<Object>()
+                {
+                    public Object call()
+                        throws IOException
+                    {
+                        sendChunk( chunk.intValue() );
+                        return null;
+                    }
+                } ) );
+            }
+
+            IOException failure = null;
+            for ( Future<Object> future : futures )
+            {
+                try
+                {
+                    future.get();
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( e.getCause() instanceof RangeRejectedException )
+                    {
+                        sequential = true;
+                    }
+                    else if ( failure == null )
+                    {
+                        failure = e.getCause() instanceof IOException ? (IOException) e.getCause()
+                            : new IOException( e.getCause().toString() );
+                    }
+                }
+            }
+            if ( failure != null )
+            {
+                throw failure;
+            }
+            if ( sequential )
+            {
+                log.info( url.getHost() + " does not accept chunks out of order, sending the rest of " + file.getName()
+                    + " one chunk after the other" );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while uploading " + file );
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private void sendChunk( int chunk )
+        throws IOException
+    {
+        long first = (long) chunk * chunkSize;
+        int length = (int) Math.min( chunkSize, size - first );
+        String range = "bytes " + first + '-' + ( first + length - 1 ) + '/' + size;
+
+        acquire( 0, true );
+        HttpURLConnection connection = open( url, "PUT" );
+        FileInputStream in = null;
+        int status = -1;
+        try
+        {
+            connection.setDoOutput( true );
+            connection.setFixedLengthStreamingMode( length );
+            connection.setRequestProperty( "Content-Range", range );
+
+            in = new FileInputStream( file );
+            in.getChannel().position( first );
+            OutputStream out = connection.getOutputStream();
+            byte[] buffer = new byte[Math.min( BUFFER_SIZE, length )];
+            for ( int remaining = length; remaining > 0; )
+            {
+                int count = in.read( buffer, 0, Math.min( buffer.length, remaining ) );
+                if ( count < 0 )
+                {
+                    throw new IOException( file + " got shorter while it was uploaded" );
+                }
+                acquire( count, false );
+                out.write( buffer, 0, count );
+                remaining -= count;
+            }
+            out.close();
+
+            status = answer( connection );
+            if ( isSuccess( status ) || status == RESUME_INCOMPLETE )
+            {
+                acknowledge( chunk );
+                log.debug( "Uploaded " + range + " of " + file.getName() );
+            }
+            else if ( status == HttpURLConnection.HTTP_CONFLICT || status == 416 )
+            {
+                throw new RangeRejectedException( url + " rejected " + range + " with status " + status );
+            }
+            else
+            {
+                throw new IOException( url + " returned status " + status + " for " + range );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+            release( connection, status );
+        }
+    }
+
+    /**
+     * Asks the server which bytes it holds. When it lost bytes it acknowledged before, the chunks past the bytes it
+     * confirms are sent again.
+     */
+    private void synchronizeWithServer()
+        throws IOException
+    {
+        if ( !statusQueries )
+        {
+            return;
+        }
+
+        acquire( 0, true );
+        HttpURLConnection connection = open( url, "PUT" );
+        int status = -1;
+        try
+        {
+            connection.setDoOutput( true );
+            connection.setFixedLengthStreamingMode( 0 );
+            connection.setRequestProperty( "Content-Range", "bytes */" + size );
+            connection.getOutputStream().close();
+
+            status = answer( connection );
+            if ( status != RESUME_INCOMPLETE )
+            {
+                log.debug( url.getHost() + " answered the status query of " + file.getName() + " with " + status
+                    + ", resuming from the acknowledged chunks" );
+                statusQueries = false;
+                return;
+            }
+
+            long confirmed = 0;
+            String range = connection.getHeaderField( "Range" );
+            Matcher matcher = range != null ? RANGE.matcher( range ) : null;
+            if ( matcher != null && matcher.matches() )
+            {
+                confirmed = Long.parseLong( matcher.group( 1 ) ) + 1;
+            }
+            int confirmedChunks = confirmed >= size ? chunkCount : (int) ( confirmed / chunkSize );
+            synchronized ( this )
+            {
+                if ( confirmedChunks < acknowledged.nextClearBit( 0 ) )
+                {
+                    acknowledged.clear( confirmedChunks, chunkCount );
+                }
+                acknowledged.set( 0, confirmedChunks );
+            }
+            log.info( "Resuming upload of " + file.getName() + " at byte " + (long) confirmedChunks * chunkSize );
+        }
+        finally
+        {
+            release( connection, status );
+        }
+    }
+
+    /**
+     * Checks the size of the uploaded file on the server, when the server tells it.
+     */
+    private void verify()
+        throws IOException
+    {
+        HttpURLConnection connection = open( url, "HEAD" );
+        int status = -1;
+        try
+        {
+            status = answer( connection );
+            String length = connection.getHeaderField( "Content-Length" );
+            if ( !isSuccess( status ) || length == null )
+            {
+                log.debug( "Cannot check the size of " + url + ", HEAD returned " + status );
+                return;
+            }
+            if ( Long.parseLong( length.trim() ) != size )
+            {
+                synchronized ( this )
+                {
+                    acknowledged.clear();
+                }
+                throw new IOException( url + " holds " + length + " bytes instead of " + size
+                    + ", the repository does not seem to support uploads with a Content-Range" );
+            }
+        }
+        finally
+        {
+            release( connection, status );
+        }
+    }
+
+    /**
+     * Uploads a small file, like a checksum, with a single request.
+     */
+    void put( URL target, byte[] content )
+        throws IOException
+    {
+        acquire( content.length, true );
+        HttpURLConnection connection = open( target, "PUT" );
+        int status = -1;
+        try
+        {
+            connection.setDoOutput( true );
+            connection.setFixedLengthStreamingMode( content.length );
+            OutputStream out = connection.getOutputStream();
+            out.write( content );
+            out.close();
+
+            status = answer( connection );
+            if ( !isSuccess( status ) )
+            {
+                throw new IOException( target + " returned status " + status );
+            }
+        }
+        finally
+        {
+            release( connection, status );
+        }
+    }
+
+    private HttpURLConnection open( URL target, String method )
+        throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) target.openConnection();
+        connection.setRequestMethod( method );
+        connection.setInstanceFollowRedirects( false );
+        connection.setUseCaches( false );
+        connection.setConnectTimeout( connectTimeout );
+        connection.setReadTimeout( readTimeout );
+        if ( authorization != null )
+        {
+            connection.setRequestProperty( "Authorization", authorization );
+        }
+        return connection;
+    }
+
+    /**
+     * Reads the answer of the server to the end, so the connection goes back to the keep-alive cache for the next
+     * request instead of being left with unread data on it.
+     *
+     * @return the status of the answer
+     */
+    private static int answer( HttpURLConnection connection )
+        throws IOException
+    {
+        int status = connection.getResponseCode();
+        InputStream in = connection.getErrorStream();
+        if ( in == null && status < HttpURLConnection.HTTP_BAD_REQUEST )
+        {
+            in = connection.getInputStream();
+        }
+        if ( in != null )
+        {
+            try
+            {
+                byte[] buffer = new byte[1024];
+                while ( in.read( buffer ) >= 0 )
+                {
+                    // the answer is not used
+                }
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Closes the connection of a request that got no answer, which the server may still be reading or may have dropped.
+     * A connection whose answer was read stays open for the next request.
+     */
+    private static void release( HttpURLConnection connection, int status )
+    {
+        if ( status < 0 )
+        {
+            connection.disconnect();
+        }
+    }
+
+    private void acquire( long bytes, boolean request )
+        throws IOException
+    {
+        if ( throttle == null )
+        {
+            return;
+        }
+        try
+        {
+            if ( request )
+            {
+                throttle.acquireRequest();
+            }
+            throttle.acquireBytes( bytes );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for the upload throttle" );
+        }
+    }
+
+    private static boolean isSuccess( int status )
+    {
+        return status >= 200 && status < 300;
+    }
+
+    private static String base64( String value )
+    {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        byte[] bytes;
+        try
+        {
+            bytes = value.getBytes( "UTF-8" );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e );
+        }
+        StringBuilder encoded = new StringBuilder();
+        for ( int i = 0; i < bytes.length; i += 3 )
+        {
+            int b = ( bytes[i] & 0xff ) << 16;
+            b |= i + 1 < bytes.length ? ( bytes[i + 1] & 0xff ) << 8 : 0;
+            b |= i + 2 < bytes.length ? bytes[i + 2] & 0xff : 0;
+            encoded.append( alphabet.charAt( b >> 18 & 0x3f ) ).append( alphabet.charAt( b >> 12 & 0x3f ) );
+            encoded.append( i + 1 < bytes.length ? alphabet.charAt( b >> 6 & 0x3f ) : '=' );
+            encoded.append( i + 2 < bytes.length ? alphabet.charAt( b & 0x3f ) : '=' );
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * The server does not accept a chunk at this offset, usually because it only appends.
+     */
+    private static class RangeRejectedException
+        extends IOException
+    {
+        RangeRejectedException( String message )
+        {
+            super( message );
+        }
+    }
+}
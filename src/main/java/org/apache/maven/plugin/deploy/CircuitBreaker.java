@@ -0,0 +1,121 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts consecutive failed uploads to one deployment repository. Once the threshold is reached the circuit opens
+ * and uploads are refused until the cool-down has passed; then a single trial upload is let through, which closes the
+ * circuit again when it succeeds and reopens it when it fails.
+ *
+ * @version $Id$
+ */
+class CircuitBreaker
+{
+    /**
+     * The breakers of all repositories in one build, shared through the {@link SessionScope}.
+     */
+    static class Registry
+    {
+        private final Map<String, CircuitBreaker> breakers = new HashMap<String, CircuitBreaker>();
+
+        /**
+         * @param repositoryKey identifies the repository, usually its id and url
+         * @param threshold the number of consecutive failures that opens the circuit
+         * @param coolDown how long the circuit stays open, in milliseconds
+         * @return the breaker of the repository, created with the given settings on the first call
+         */
+        synchronized CircuitBreaker get( String repositoryKey, int threshold, long coolDown )
+        {
+            CircuitBreaker breaker = breakers.get( repositoryKey );
+            if ( breaker == null )
+            {
+                breaker = new CircuitBreaker( threshold, coolDown );
+                breakers.put( repositoryKey, breaker );
+            }
+            return breaker;
+        }
+    }
+
+    private final int threshold;
+
+    private final long coolDown;
+
+    private int consecutiveFailures;
+
+    private long openUntil;
+
+    private boolean trialRunning;
+
+    CircuitBreaker( int threshold, long coolDown )
+    {
+        this.threshold = threshold;
+        this.coolDown = coolDown;
+    }
+
+    /**
+     * Asks permission for an upload.
+     *
+     * @return 0 if the upload may start, otherwise the number of milliseconds after which to ask again
+     */
+    synchronized long blockedFor()
+    {
+        if ( consecutiveFailures < threshold )
+        {
+            return 0;
+        }
+
+        long remaining = openUntil - System.currentTimeMillis();
+        if ( remaining > 0 )
+        {
+            return remaining;
+        }
+        if ( trialRunning )
+        {
+            // another upload is finding out whether the repository is back
+            return Math.max( 100, coolDown / 10 );
+        }
+        trialRunning = true;
+        return 0;
+    }
+
+    synchronized void success()
+    {
+        consecutiveFailures = 0;
+        trialRunning = false;
+    }
+
+    synchronized void failure()
+    {
+        consecutiveFailures++;
+        if ( consecutiveFailures >= threshold )
+        {
+            openUntil = System.currentTimeMillis() + coolDown;
+        }
+        trialRunning = false;
+    }
+
+    synchronized int getConsecutiveFailures()
+    {
+        return consecutiveFailures;
+    }
+}
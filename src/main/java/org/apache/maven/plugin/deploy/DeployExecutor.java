@@ -0,0 +1,320 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Runs deployment tasks on a bounded pool of upload threads. With a single thread the tasks are run inline, in
+ * submission order, exactly as the mojos used to do it. Inline tasks submitted from several threads, like the
+ * uploads handed over by the pom filtering stage, still run one at a time.
+ * <p/>
+ * When <code>failureIsAnOption</code> is set a failing task is logged and counted, otherwise the first failure
+ * prevents any further task from starting and is rethrown by {@link #await()}. An executor shared by mojos with
+ * different settings takes the setting with every task.
+ *
+ * @version $Id$
+ */
+class DeployExecutor
+{
+    /**
+     * A unit of work submitted to the executor, usually the upload of one artifact and its POM.
+     */
+    interface Task
+    {
+        void execute()
+            throws MojoExecutionException;
+    }
+
+    private final ExecutorService pool;
+
+    private final boolean failureIsAnOption;
+
+    private final Log log;
+
+    private final AtomicInteger swallowed = new AtomicInteger();
+
+    private final List<Future<?>> pending = new ArrayList<Future<?>>();
+
+    private final Object inlineLock = new Object();
+
+    private volatile MojoExecutionException failure;
+
+    private Semaphore capacity;
+
+    DeployExecutor( int threads, boolean failureIsAnOption, Log log )
+    {
+        this( "deploy", threads, failureIsAnOption, log );
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @param threads the number of threads, tasks are run inline when this is 1 or less
+     * @param failureIsAnOption whether failing tasks are only logged
+     * @param log where failing tasks are logged
+     */
+    DeployExecutor( String name, int threads, boolean failureIsAnOption, Log log )
+    {
+        this.failureIsAnOption = failureIsAnOption;
+        this.log = log;
+        this.pool = threads > 1 ? Executors.newFixedThreadPool( threads, new DeployThreadFactory( name ) ) : null;
+    }
+
+    /**
+     * Limits the number of tasks waiting for a thread. Once the limit is reached {@link #submit(String, Task)} blocks
+     * until a task finished, so producers that find their work faster than it can be uploaded do not queue all of it.
+     *
+     * @param tasks the number of tasks that may be submitted and not finished yet
+     */
+    void setMaxPending( int tasks )
+    {
+        capacity = new Semaphore( tasks );
+    }
+
+    /**
+     * @return <code>true</code> if a task failed and failure is not an option, no further task will run
+     */
+    boolean isFailed()
+    {
+        return failure != null;
+    }
+
+    /**
+     * Schedules a task. In single threaded mode the task runs before this method returns.
+     *
+     * @param description what is being deployed, used in the log when the task fails
+     * @param task the work to do
+     * @throws MojoExecutionException if the task already failed and failure is not an option
+     */
+    void submit( String description, Task task )
+        throws MojoExecutionException
+    {
+        submit( description, task, failureIsAnOption );
+    }
+
+    /**
+     * Schedules a task with its own failure policy instead of the one of the executor.
+     *
+     * @param description what is being deployed, used in the log when the task fails
+     * @param task the work to do
+     * @param failureIsAnOption whether a failure of this task is only logged
+     * @throws MojoExecutionException if a task already failed and failure is not an option
+     */
+    void submit( final String description, final Task task, final boolean failureIsAnOption )
+        throws MojoExecutionException
+    {
+        if ( pool == null )
+        {
+            synchronized ( inlineLock )
+            {
+                run( description, task, failureIsAnOption );
+            }
+            rethrow();
+            return;
+        }
+
+        if ( failure != null )
+        {
+            return;
+        }
+
+        final Semaphore capacity = this.capacity;
+        if ( capacity != null )
+        {
+            try
+            {
+                capacity.acquire();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException( "Interrupted while scheduling " + description, e );
+            }
+        }
+
+        Future<?> future = pool.submit( new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    if ( failure == null )
+                    {
+                        DeployExecutor.this.run( description, task, failureIsAnOption );
+                    }
+                }
+                finally
+                {
+                    if ( capacity != null )
+                    {
+                        capacity.release();
+                    }
+                }
+            }
+        } );
+
+        synchronized ( pending )
+        {
+            pending.add( future );
+            if ( capacity != null && pending.size() > 1024 )
+            {
+                pruneFinished();
+            }
+        }
+    }
+
+    /**
+     * Waits for all tasks submitted so far. The executor can be used again afterwards.
+     *
+     * @throws MojoExecutionException the first failure if failure is not an option
+     */
+    void await()
+        throws MojoExecutionException
+    {
+        while ( true )
+        {
+            List<Future<?>> futures;
+            synchronized ( pending )
+            {
+                if ( pending.isEmpty() )
+                {
+                    break;
+                }
+                futures = new ArrayList<Future<?>>( pending );
+                pending.clear();
+            }
+
+            for ( Future<?> future : futures )
+            {
+                try
+                {
+                    future.get();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException( "Interrupted while waiting for deployments to finish", e );
+                }
+                catch ( ExecutionException e )
+                {
+                    throw new MojoExecutionException( "Deployment task failed unexpectedly", e.getCause() );
+                }
+            }
+        }
+
+        rethrow();
+    }
+
+    /**
+     * Forgets the tasks that finished normally, so a long running producer that never calls {@link #await()} does not
+     * keep a future for every task it ever submitted. Must be called with the lock on <code>pending</code>.
+     */
+    private void pruneFinished()
+    {
+        for ( Iterator<Future<?>> i = pending.iterator(); i.hasNext(); )
+        {
+            Future<?> future = i.next();
+            if ( future.isDone() && !future.isCancelled() )
+            {
+                try
+                {
+                    future.get();
+                    i.remove();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                catch ( ExecutionException e )
+                {
+                    // left for await to report
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of failures that were logged and ignored because failure is an option
+     */
+    int getSwallowed()
+    {
+        return swallowed.get();
+    }
+
+    void shutdown()
+    {
+        if ( pool != null )
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private void run( String description, Task task, boolean failureIsAnOption )
+    {
+        try
+        {
+            task.execute();
+        }
+        catch ( MojoExecutionException e )
+        {
+            if ( !failureIsAnOption )
+            {
+                fail( e );
+                return;
+            }
+            swallowed.incrementAndGet();
+            log.warn( "failed to deploy " + description + " but continuing anyway (failureIsAnOption)" );
+            log.debug( e );
+        }
+        catch ( RuntimeException e )
+        {
+            fail( new MojoExecutionException( "Unexpected error while deploying " + description, e ) );
+        }
+    }
+
+    private synchronized void fail( MojoExecutionException e )
+    {
+        if ( failure == null )
+        {
+            failure = e;
+        }
+    }
+
+    private void rethrow()
+        throws MojoExecutionException
+    {
+        if ( failure != null )
+        {
+            throw failure;
+        }
+    }
+}
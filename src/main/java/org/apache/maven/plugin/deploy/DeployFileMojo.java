@@ -50,8 +50,16 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Installs the artifact in the remote repository.
@@ -119,13 +127,35 @@ public class DeployFileMojo
     private String description;
 
     /**
-     * File to be deployed.
+     * File to be deployed. Required unless a <code>manifest</code> is given.
      *
      * @parameter expression="${file}"
-     * @required
      */
     private File file;
 
+    /**
+     * A CSV or JSON list of files to deploy in a single invocation, instead of <code>file</code>. A manifest whose
+     * name ends with <code>.json</code> is an array of objects, any other manifest is a CSV file whose first line
+     * names the columns. The columns are <code>file</code>, <code>groupId</code>, <code>artifactId</code>,
+     * <code>version</code>, <code>packaging</code>, <code>classifier</code> and <code>pomFile</code>; coordinates
+     * missing from an entry are taken from its pomFile. All entries are validated before anything is deployed, and
+     * they are uploaded on <code>deployThreads</code> threads.
+     *
+     * @parameter expression="${manifest}"
+     */
+    private File manifest;
+
+    /**
+     * A directory laid out like a repository, like a part of the local repository or an unpacked vendor drop, whose
+     * artifacts are all deployed instead of <code>file</code>. Every version directory holding an
+     * <code>artifactId-version.pom</code> is deployed with the files next to its POM: the artifactId, version,
+     * classifier and extension are taken from the paths, the groupId from the POM. The directories are deployed as
+     * they are found, on <code>deployThreads</code> threads.
+     *
+     * @parameter expression="${repositoryDirectory}"
+     */
+    private File repositoryDirectory;
+
     /**
      * The bundled API docs for the artifact.
      *
@@ -254,8 +284,29 @@ public class DeployFileMojo
 
     public void execute()
             throws MojoExecutionException, MojoFailureException {
+        try {
+            if (manifest != null) {
+                deployManifest();
+            } else if (repositoryDirectory != null) {
+                deployRepositoryDirectory();
+            } else {
+                deployFile();
+            }
+        } finally {
+            shutdownChecksumProbe();
+            closeDeploymentLedgers();
+            writeDeployReport("deploy-file-report");
+        }
+    }
+
+    private void deployFile()
+            throws MojoExecutionException, MojoFailureException {
         failIfOffline();
 
+        if (file == null) {
+            throw new MojoExecutionException("You must specify either 'file', 'manifest' or 'repositoryDirectory'");
+        }
+
         if (!file.exists()) {
             throw new MojoExecutionException(file.getPath() + " not found.");
         }
@@ -300,6 +351,8 @@ public class DeployFileMojo
 
         project.setArtifact(artifact);
 
+        beginMetadataBatch();
+
         try {
             deploy(file, artifact, deploymentRepository, getLocalRepository());
         } catch (ArtifactDeploymentException e) {
@@ -388,6 +441,328 @@ public class DeployFileMojo
             }
         }
 
+        deployMetadataBatch();
+    }
+
+    /**
+     * Deploys the artifacts collected for batchMetadata, if any.
+     */
+    private void deployMetadataBatch()
+            throws MojoExecutionException {
+        DeployExecutor executor = newDeployExecutor(false);
+        try {
+            flushMetadataBatch(executor);
+            executor.await();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Deploys all the files listed in the manifest. Every entry is validated before the first upload, so a mistake in
+     * the last line of the manifest does not leave half of the files deployed.
+     */
+    private void deployManifest()
+            throws MojoExecutionException, MojoFailureException {
+        failIfOffline();
+
+        if (file != null || repositoryDirectory != null) {
+            throw new MojoExecutionException("You must specify only one of 'file', 'manifest' and 'repositoryDirectory'");
+        }
+        if (!manifest.isFile()) {
+            throw new MojoExecutionException(manifest.getPath() + " not found.");
+        }
+
+        List<DeployManifest.Entry> entries = DeployManifest.read(manifest);
+
+        List<Artifact> artifacts = new ArrayList<Artifact>(entries.size());
+        Map<Artifact, File> pomFiles = new IdentityHashMap<Artifact, File>();
+        Set<String> ids = new HashSet<String>();
+        StringBuilder problems = new StringBuilder();
+        for (DeployManifest.Entry entry : entries) {
+            try {
+                Artifact artifact = createArtifact(entry);
+                if (!ids.add(artifact.getId())) {
+                    throw new MojoExecutionException(artifact.getId() + " is listed more than once");
+                }
+                if (entry.file.equals(getLocalRepoFile(artifact))) {
+                    throw new MojoExecutionException("Cannot deploy artifact from the local repository: " + entry.file);
+                }
+                if (entry.pomFile != null) {
+                    pomFiles.put(artifact, entry.pomFile);
+                }
+                artifacts.add(artifact);
+            } catch (MojoExecutionException e) {
+                problems.append("  ").append(entry.location).append(": ").append(e.getMessage()).append('\n');
+            }
+        }
+        if (problems.length() > 0) {
+            throw new MojoExecutionException("The manifest " + manifest + " has invalid entries:\n" + problems);
+        }
+        if (artifacts.isEmpty()) {
+            getLog().warn("The manifest " + manifest + " does not list any file to deploy");
+            return;
+        }
+
+        ArtifactRepository deploymentRepository = createDeploymentRepository();
+
+        // only generate the POMs once all entries are known to be valid
+        for (Artifact artifact : artifacts) {
+            if (artifact.hasClassifier() || "pom".equals(artifact.getType())) {
+                continue;
+            }
+            File entryPomFile = pomFiles.get(artifact);
+            if (entryPomFile == null && generatePom) {
+                entryPomFile = generatePomFile(generateModel(artifact.getGroupId(), artifact.getArtifactId(),
+                        artifact.getBaseVersion(), artifact.getType()));
+            }
+            if (entryPomFile != null) {
+                artifact.addMetadata(new ProjectArtifactMetadata(artifact, entryPomFile));
+            }
+        }
+
+        // the main artifacts go first, like the attached artifacts of a project follow its main artifact
+        beginMetadataBatch();
+        DeployExecutor executor = newDeployExecutor(false);
+        try {
+            submitDeployments(artifacts, false, deploymentRepository, executor);
+            executor.await();
+            submitDeployments(artifacts, true, deploymentRepository, executor);
+            executor.await();
+            flushMetadataBatch(executor);
+            executor.await();
+        } finally {
+            executor.shutdown();
+        }
+
+        getLog().info("Deployed " + artifacts.size() + " files listed in " + manifest);
+    }
+
+    private void submitDeployments(List<Artifact> artifacts, boolean classified,
+                                   final ArtifactRepository deploymentRepository, DeployExecutor executor)
+            throws MojoExecutionException {
+        artifacts = new ArrayList<Artifact>(artifacts);
+        Map<Artifact, Long> sizes = new IdentityHashMap<Artifact, Long>();
+        for (Artifact artifact : artifacts) {
+            sizes.put(artifact, Long.valueOf(artifact.getFile().length()));
+        }
+        sortLargestFirst(artifacts, sizes);
+
+        for (final Artifact artifact : artifacts) {
+            if (artifact.hasClassifier() != classified) {
+                continue;
+            }
+            executor.submit(artifact.getId(), new DeployExecutor.Task() {
+                public void execute()
+                        throws MojoExecutionException {
+                    try {
+                        deploy(artifact.getFile(), artifact, deploymentRepository, getLocalRepository());
+                    } catch (ArtifactDeploymentException e) {
+                        throw new MojoExecutionException("Error deploying " + artifact.getFile() + ": "
+                                + e.getMessage(), e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates the artifact of a manifest entry, with the coordinates missing from the entry taken from its POM. The
+     * entry is completed with the coordinates actually used.
+     *
+     * @param entry The manifest entry, must not be <code>null</code>.
+     * @return The validated artifact, its file set, never <code>null</code>.
+     * @throws MojoExecutionException If the entry is incomplete or not valid.
+     */
+    private Artifact createArtifact(DeployManifest.Entry entry)
+            throws MojoExecutionException {
+        if (entry.file == null) {
+            throw new MojoExecutionException("No file specified");
+        }
+        if (!entry.file.isFile()) {
+            throw new MojoExecutionException(entry.file.getPath() + " not found.");
+        }
+
+        if (entry.classifier != null && entry.packaging == null) {
+            // the packaging of the POM is the one of the main artifact
+            entry.packaging = FileUtils.getExtension(entry.file.getName());
+        }
+        if (entry.pomFile != null) {
+            processModel(readModel(entry.pomFile), entry);
+        }
+        if (entry.packaging == null) {
+            entry.packaging = FileUtils.getExtension(entry.file.getName());
+        }
+
+        ModelValidationResult result =
+                modelValidator.validate(generateModel(entry.groupId, entry.artifactId, entry.version, entry.packaging));
+        if (result.getMessageCount() > 0) {
+            throw new MojoExecutionException("The artifact information is incomplete or not valid:\n"
+                    + result.render("    "));
+        }
+
+        Artifact artifact = new DefaultArtifact(entry.groupId, entry.artifactId, entry.version, "", entry.packaging,
+                entry.classifier == null ? "" : entry.classifier, handler);
+        artifact.setFile(entry.file);
+
+        if (updateReleaseInfo) {
+            artifact.setRelease(true);
+        }
+        return artifact;
+    }
+
+    /**
+     * Deploys every version directory found below the repository directory. The tree is walked one directory at a
+     * time and each version directory is handed to the upload threads as soon as it is found, so neither the listing
+     * of the whole tree nor the queue of uploads is ever held in memory.
+     */
+    private void deployRepositoryDirectory()
+            throws MojoExecutionException, MojoFailureException {
+        failIfOffline();
+
+        if (file != null) {
+            throw new MojoExecutionException("You must specify only one of 'file', 'manifest' and 'repositoryDirectory'");
+        }
+        if (!repositoryDirectory.isDirectory()) {
+            throw new MojoExecutionException(repositoryDirectory.getPath() + " is not a directory.");
+        }
+
+        final ArtifactRepository deploymentRepository = createDeploymentRepository();
+        final AtomicInteger deployed = new AtomicInteger();
+
+        DeployExecutor executor = newDeployExecutor(false);
+        executor.setMaxPending(getDeployThreads() * 2);
+        try {
+            // depth first, so only the directories still to visit next to the current path are remembered
+            LinkedList<File> directories = new LinkedList<File>();
+            directories.add(repositoryDirectory.getAbsoluteFile());
+            while (!directories.isEmpty() && !executor.isFailed()) {
+                final File directory = directories.removeFirst();
+                final String[] names = directory.list();
+                if (names == null) {
+                    getLog().warn("Cannot list " + directory + ", skipping it");
+                    continue;
+                }
+                Arrays.sort(names);
+
+                File artifactDirectory = directory.getParentFile();
+                if (artifactDirectory != null
+                        && new File(directory, artifactDirectory.getName() + '-' + directory.getName() + ".pom").isFile()) {
+                    executor.submit(directory.getPath(), new DeployExecutor.Task() {
+                        public void execute()
+                                throws MojoExecutionException {
+                            deployed.addAndGet(deployVersionDirectory(directory, names, deploymentRepository));
+                        }
+                    });
+                    continue;
+                }
+
+                int position = 0;
+                for (String name : names) {
+                    File child = new File(directory, name);
+                    if (child.isDirectory()) {
+                        directories.add(position++, child);
+                    }
+                }
+            }
+            executor.await();
+        } finally {
+            executor.shutdown();
+        }
+
+        getLog().info("Deployed " + deployed.get() + " files found in " + repositoryDirectory);
+    }
+
+    /**
+     * Deploys the artifacts of one version directory, the main artifact with its POM first.
+     *
+     * @param directory The version directory, holding <code>artifactId-version.pom</code>.
+     * @param names The names of the files in the directory.
+     * @param deploymentRepository The repository to deploy to.
+     * @return The number of files deployed.
+     * @throws MojoExecutionException If the POM cannot be read, a coordinate is invalid or an upload failed.
+     */
+    private int deployVersionDirectory(File directory, String[] names, ArtifactRepository deploymentRepository)
+            throws MojoExecutionException {
+        File artifactDirectory = directory.getParentFile();
+        String prefix = artifactDirectory.getName() + '-' + directory.getName();
+        File pom = new File(directory, prefix + ".pom");
+        Model model = readModel(pom);
+
+        Artifact main = null;
+        List<Artifact> artifacts = new ArrayList<Artifact>();
+        for (String name : names) {
+            String rest = name.substring(Math.min(prefix.length(), name.length()));
+            int dot = rest.indexOf('.');
+            if (!name.startsWith(prefix) || name.equals(pom.getName()) || isChecksumOrSignature(name)
+                    || dot < 0 || (dot > 0 && (dot == 1 || !rest.startsWith("-")))) {
+                getLog().debug("Skipping " + new File(directory, name));
+                continue;
+            }
+
+            DeployManifest.Entry entry = new DeployManifest.Entry();
+            entry.file = new File(directory, name);
+            entry.artifactId = artifactDirectory.getName();
+            entry.version = directory.getName();
+            entry.classifier = dot > 1 ? rest.substring(1, dot) : null;
+            entry.packaging = rest.substring(dot + 1);
+            processModel(model, entry);
+
+            Artifact artifact = createArtifact(entry);
+            if (artifact.hasClassifier()) {
+                artifacts.add(artifact);
+            } else {
+                main = artifact;
+            }
+        }
+
+        if (main == null) {
+            // a pom packaged project, or a directory with classified artifacts only
+            DeployManifest.Entry entry = new DeployManifest.Entry();
+            entry.file = pom;
+            entry.artifactId = artifactDirectory.getName();
+            entry.version = directory.getName();
+            entry.packaging = "pom";
+            processModel(model, entry);
+            main = createArtifact(entry);
+        } else {
+            main.addMetadata(new ProjectArtifactMetadata(main, pom));
+        }
+        artifacts.add(0, main);
+
+        String groupPath = File.separator + main.getGroupId().replace('.', File.separatorChar);
+        if (!artifactDirectory.getParent().endsWith(groupPath)) {
+            getLog().warn("The groupId " + main.getGroupId() + " of " + pom + " does not match its path");
+        }
+
+        List<MetadataBatch.Item> group = new ArrayList<MetadataBatch.Item>(artifacts.size());
+        for (Artifact artifact : artifacts) {
+            group.add(new MetadataBatch.Item(artifact.getFile(), artifact, deploymentRepository));
+        }
+        try {
+            deployGroup(group);
+        } catch (ArtifactDeploymentException e) {
+            throw new MojoExecutionException("Error deploying " + directory + ": " + e.getMessage(), e);
+        }
+        return artifacts.size();
+    }
+
+    private static boolean isChecksumOrSignature(String name) {
+        return name.endsWith(".md5") || name.endsWith(".sha1") || name.endsWith(".sha256") || name.endsWith(".sha512")
+                || name.endsWith(".asc") || name.endsWith(".lastUpdated");
+    }
+
+    private ArtifactRepository createDeploymentRepository()
+            throws MojoExecutionException {
+        ArtifactRepositoryLayout layout = getLayout(repositoryLayout);
+
+        ArtifactRepository deploymentRepository =
+                repositoryFactory.createDeploymentArtifactRepository(repositoryId, url, layout, uniqueVersion);
+
+        if (StringUtils.isEmpty(deploymentRepository.getProtocol())) {
+            throw new MojoExecutionException("No transfer protocol found.");
+        }
+        return deploymentRepository;
     }
 
     /**
@@ -408,25 +783,46 @@ public class DeployFileMojo
      * @param model The POM to extract missing artifact coordinates from, must not be <code>null</code>.
      */
     private void processModel(Model model) {
+        DeployManifest.Entry coordinates = new DeployManifest.Entry();
+        coordinates.groupId = this.groupId;
+        coordinates.artifactId = this.artifactId;
+        coordinates.version = this.version;
+        coordinates.packaging = this.packaging;
+
+        processModel(model, coordinates);
+
+        this.groupId = coordinates.groupId;
+        this.artifactId = coordinates.artifactId;
+        this.version = coordinates.version;
+        this.packaging = coordinates.packaging;
+    }
+
+    /**
+     * Fills in the groupId, artifactId, version, and packaging missing from an entry with the ones of a POM
+     *
+     * @param model The POM to extract missing artifact coordinates from, must not be <code>null</code>.
+     * @param entry The coordinates to complete, must not be <code>null</code>.
+     */
+    private static void processModel(Model model, DeployManifest.Entry entry) {
         Parent parent = model.getParent();
 
-        if (this.groupId == null) {
-            this.groupId = model.getGroupId();
-            if (this.groupId == null && parent != null) {
-                this.groupId = parent.getGroupId();
+        if (entry.groupId == null) {
+            entry.groupId = model.getGroupId();
+            if (entry.groupId == null && parent != null) {
+                entry.groupId = parent.getGroupId();
             }
         }
-        if (this.artifactId == null) {
-            this.artifactId = model.getArtifactId();
+        if (entry.artifactId == null) {
+            entry.artifactId = model.getArtifactId();
         }
-        if (this.version == null) {
-            this.version = model.getVersion();
-            if (this.version == null && parent != null) {
-                this.version = parent.getVersion();
+        if (entry.version == null) {
+            entry.version = model.getVersion();
+            if (entry.version == null && parent != null) {
+                entry.version = parent.getVersion();
             }
         }
-        if (this.packaging == null) {
-            this.packaging = model.getPackaging();
+        if (entry.packaging == null) {
+            entry.packaging = model.getPackaging();
         }
     }
 
@@ -462,8 +858,18 @@ public class DeployFileMojo
      */
     private File generatePomFile()
             throws MojoExecutionException {
-        Model model = generateModel();
+        return generatePomFile(generateModel());
+    }
 
+    /**
+     * Writes a model to a temporary POM file.
+     *
+     * @param model The model to write, must not be <code>null</code>.
+     * @return The path to the generated POM file, never <code>null</code>.
+     * @throws MojoExecutionException If the generation failed.
+     */
+    private File generatePomFile(Model model)
+            throws MojoExecutionException {
         Writer fw = null;
         try {
             File tempFile = File.createTempFile("mvndeploy", ".pom");
@@ -503,6 +909,15 @@ public class DeployFileMojo
      * @return The generated model, never <code>null</code>.
      */
     private Model generateModel() {
+        return generateModel(groupId, artifactId, version, packaging);
+    }
+
+    /**
+     * Generates a minimal model from the given artifact coordinates.
+     *
+     * @return The generated model, never <code>null</code>.
+     */
+    private Model generateModel(String groupId, String artifactId, String version, String packaging) {
         Model model = new Model();
 
         model.setModelVersion("4.0.0");
@@ -0,0 +1,462 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * The list of files deployed by one <code>deploy-file</code> invocation in manifest mode. A manifest whose name ends
+ * with <code>.json</code> is an array of objects, any other manifest is a CSV file whose first line names the
+ * columns. The known columns are <code>file</code>, <code>groupId</code>, <code>artifactId</code>,
+ * <code>version</code>, <code>packaging</code>, <code>classifier</code> and <code>pomFile</code>; empty lines,
+ * lines starting with <code>#</code> and empty fields beyond the header are ignored in CSV manifests.
+ * <p/>
+ * Relative paths are resolved against the directory of the manifest.
+ *
+ * @version $Id$
+ */
+class DeployManifest
+{
+    /**
+     * One file to deploy, with the coordinates given for it in the manifest. Missing values are <code>null</code>.
+     */
+    static class Entry
+    {
+        File file;
+
+        String groupId;
+
+        String artifactId;
+
+        String version;
+
+        String packaging;
+
+        String classifier;
+
+        File pomFile;
+
+        /**
+         * Where the entry was defined, for error messages.
+         */
+        String location;
+    }
+
+    private DeployManifest()
+    {
+    }
+
+    /**
+     * Reads the entries of a manifest.
+     *
+     * @param manifest the CSV or JSON manifest, must not be <code>null</code>
+     * @return the entries in manifest order, never <code>null</code>
+     * @throws MojoExecutionException if the manifest cannot be read or is malformed
+     */
+    static List<Entry> read( File manifest )
+        throws MojoExecutionException
+    {
+        Reader reader = null;
+        try
+        {
+            reader = ReaderFactory.newReader( manifest, "UTF-8" );
+            String content = IOUtil.toString( reader );
+            if ( content.startsWith( "\uFEFF" ) )
+            {
+                // the byte order mark some editors write at the start of UTF-8 files
+                content = content.substring( 1 );
+            }
+            List<Map<String, String>> records = manifest.getName().toLowerCase( Locale.ENGLISH ).endsWith( ".json" )
+                ? new JsonParser( content ).parseRecords()
+                : parseCsv( content );
+
+            File basedir = manifest.getAbsoluteFile().getParentFile();
+            List<Entry> entries = new ArrayList<Entry>( records.size() );
+            for ( Map<String, String> record : records )
+            {
+                entries.add( toEntry( record, basedir, manifest.getName() ) );
+            }
+            return entries;
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Error reading manifest " + manifest + ": " + e.getMessage(), e );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( "Error parsing manifest " + manifest + ": " + e.getMessage(), e );
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    private static Entry toEntry( Map<String, String> record, File basedir, String manifestName )
+    {
+        Entry entry = new Entry();
+        entry.location = manifestName + ", " + record.remove( "#location" );
+        entry.file = toFile( basedir, record.remove( "file" ) );
+        entry.groupId = record.remove( "groupId" );
+        entry.artifactId = record.remove( "artifactId" );
+        entry.version = record.remove( "version" );
+        entry.packaging = record.remove( "packaging" );
+        entry.classifier = record.remove( "classifier" );
+        entry.pomFile = toFile( basedir, record.remove( "pomFile" ) );
+        if ( !record.isEmpty() )
+        {
+            throw new IllegalArgumentException( "unknown field(s) " + record.keySet() + " in " + entry.location );
+        }
+        return entry;
+    }
+
+    private static File toFile( File basedir, String path )
+    {
+        if ( path == null )
+        {
+            return null;
+        }
+        File file = new File( path );
+        return file.isAbsolute() ? file : new File( basedir, path );
+    }
+
+    /**
+     * Parses a CSV manifest. Fields may be quoted with double quotes, a quote inside a quoted field is doubled.
+     */
+    static List<Map<String, String>> parseCsv( String content )
+        throws IOException
+    {
+        List<Map<String, String>> records = new ArrayList<Map<String, String>>();
+        BufferedReader reader = new BufferedReader( new StringReader( content ) );
+        List<String> header = null;
+        int lineNumber = 0;
+        for ( String line = reader.readLine(); line != null; line = reader.readLine() )
+        {
+            lineNumber++;
+            if ( line.trim().length() == 0 || line.trim().startsWith( "#" ) )
+            {
+                continue;
+            }
+            List<String> fields = splitCsvLine( line, lineNumber );
+            if ( header == null )
+            {
+                header = fields;
+                continue;
+            }
+            // trailing empty fields, like the commas some spreadsheets add, are ignored
+            while ( fields.size() > header.size() && fields.get( fields.size() - 1 ).length() == 0 )
+            {
+                fields.remove( fields.size() - 1 );
+            }
+            if ( fields.size() > header.size() )
+            {
+                throw new IllegalArgumentException( "line " + lineNumber + " has " + fields.size()
+                    + " fields but the header only names " + header.size() );
+            }
+            Map<String, String> record = new HashMap<String, String>();
+            for ( int i = 0; i < fields.size(); i++ )
+            {
+                putValue( record, header.get( i ), fields.get( i ) );
+            }
+            record.put( "#location", "line " + lineNumber );
+            records.add( record );
+        }
+        return records;
+    }
+
+    private static List<String> splitCsvLine( String line, int lineNumber )
+    {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int quoteColumn = 0;
+        for ( int i = 0; i < line.length(); i++ )
+        {
+            char c = line.charAt( i );
+            if ( quoted )
+            {
+                if ( c != '"' )
+                {
+                    field.append( c );
+                }
+                else if ( i + 1 < line.length() && line.charAt( i + 1 ) == '"' )
+                {
+                    field.append( '"' );
+                    i++;
+                }
+                else
+                {
+                    quoted = false;
+                }
+            }
+            else if ( c == '"' )
+            {
+                quoted = true;
+                quoteColumn = i + 1;
+            }
+            else if ( c == ',' )
+            {
+                fields.add( field.toString().trim() );
+                field.setLength( 0 );
+            }
+            else
+            {
+                field.append( c );
+            }
+        }
+        if ( quoted )
+        {
+            throw new IllegalArgumentException( "unterminated quote at line " + lineNumber + ", column "
+                + quoteColumn );
+        }
+        fields.add( field.toString().trim() );
+        return fields;
+    }
+
+    private static void putValue( Map<String, String> record, String name, String value )
+    {
+        if ( StringUtils.isNotEmpty( value ) )
+        {
+            record.put( name, value );
+        }
+    }
+
+    /**
+     * Just enough JSON to read an array of flat objects whose values are strings, numbers, booleans or
+     * <code>null</code>.
+     */
+    static class JsonParser
+    {
+        private static final Pattern LITERAL =
+            Pattern.compile( "null|true|false|-?(?:0|[1-9][0-9]*)(?:\\.[0-9]+)?(?:[eE][+-]?[0-9]+)?" );
+
+        private static final Pattern HEX = Pattern.compile( "[0-9A-Fa-f]{4}" );
+
+        private final String content;
+
+        private int position;
+
+        JsonParser( String content )
+        {
+            this.content = content;
+        }
+
+        List<Map<String, String>> parseRecords()
+        {
+            List<Map<String, String>> records = new ArrayList<Map<String, String>>();
+            expect( '[' );
+            if ( !consume( ']' ) )
+            {
+                do
+                {
+                    records.add( parseRecord( records.size() ) );
+                }
+                while ( consume( ',' ) );
+                expect( ']' );
+            }
+            skipWhitespace();
+            if ( position < content.length() )
+            {
+                throw error( "unexpected content after the array" );
+            }
+            return records;
+        }
+
+        private Map<String, String> parseRecord( int index )
+        {
+            Map<String, String> record = new HashMap<String, String>();
+            expect( '{' );
+            if ( !consume( '}' ) )
+            {
+                do
+                {
+                    String name = parseString();
+                    expect( ':' );
+                    putValue( record, name, parseValue() );
+                }
+                while ( consume( ',' ) );
+                expect( '}' );
+            }
+            record.put( "#location", "entry " + ( index + 1 ) );
+            return record;
+        }
+
+        private String parseValue()
+        {
+            skipWhitespace();
+            if ( position < content.length() && content.charAt( position ) == '"' )
+            {
+                return parseString();
+            }
+            int start = position;
+            while ( position < content.length() && ",}] \t\r\n".indexOf( content.charAt( position ) ) < 0 )
+            {
+                position++;
+            }
+            String literal = content.substring( start, position );
+            if ( literal.length() == 0 )
+            {
+                throw error( "value expected" );
+            }
+            if ( !LITERAL.matcher( literal ).matches() )
+            {
+                position = start;
+                throw error( "string, number, boolean or null expected" );
+            }
+            return "null".equals( literal ) ? null : literal;
+        }
+
+        private String parseString()
+        {
+            expect( '"' );
+            int start = position - 1;
+            StringBuilder value = new StringBuilder();
+            while ( true )
+            {
+                if ( position >= content.length() )
+                {
+                    position = start;
+                    throw error( "unterminated string" );
+                }
+                char c = content.charAt( position++ );
+                if ( c == '"' )
+                {
+                    return value.toString();
+                }
+                if ( c < ' ' )
+                {
+                    position--;
+                    throw error( "control character in string" );
+                }
+                if ( c != '\\' )
+                {
+                    value.append( c );
+                    continue;
+                }
+                if ( position >= content.length() )
+                {
+                    position = start;
+                    throw error( "unterminated string" );
+                }
+                char escaped = content.charAt( position++ );
+                switch ( escaped )
+                {
+                    case 'b':
+                        value.append( '\b' );
+                        break;
+                    case 'f':
+                        value.append( '\f' );
+                        break;
+                    case 'n':
+                        value.append( '\n' );
+                        break;
+                    case 'r':
+                        value.append( '\r' );
+                        break;
+                    case 't':
+                        value.append( '\t' );
+                        break;
+                    case 'u':
+                        String hex = content.substring( position, Math.min( position + 4, content.length() ) );
+                        if ( !HEX.matcher( hex ).matches() )
+                        {
+                            position -= 2;
+                            throw error( "invalid unicode escape" );
+                        }
+                        value.append( (char) Integer.parseInt( hex, 16 ) );
+                        position += 4;
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append( escaped );
+                        break;
+                    default:
+                        position -= 2;
+                        throw error( "invalid escape \\" + escaped );
+                }
+            }
+        }
+
+        private boolean consume( char c )
+        {
+            skipWhitespace();
+            if ( position < content.length() && content.charAt( position ) == c )
+            {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect( char c )
+        {
+            if ( !consume( c ) )
+            {
+                throw error( "'" + c + "' expected" );
+            }
+        }
+
+        private void skipWhitespace()
+        {
+            while ( position < content.length() && Character.isWhitespace( content.charAt( position ) ) )
+            {
+                position++;
+            }
+        }
+
+        /**
+         * @return the error at the current position, with its line and column counted from 1
+         */
+        private IllegalArgumentException error( String message )
+        {
+            int line = 1;
+            int column = 1;
+            for ( int i = 0; i < position && i < content.length(); i++ )
+            {
+                if ( content.charAt( i ) == '\n' )
+                {
+                    line++;
+                    column = 1;
+                }
+                else
+                {
+                    column++;
+                }
+            }
+            return new IllegalArgumentException( message + " at line " + line + ", column " + column );
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Collects how long every step of a deployment took, per artifact: the resolution and filtering of its pom and the
+ * upload itself, with the number of bytes uploaded, the number of attempts and the outcome. The samples are written
+ * as a JSON and a CSV report at the end of the mojo execution.
+ *
+ * @version $Id$
+ */
+class DeployMetrics
+{
+    static final String RESOLVE = "resolve";
+
+    static final String FILTER = "filter";
+
+    static final String DEPLOY = "deploy";
+
+    /**
+     * One timed step. Started with {@link DeployMetrics#start(String, String)} and recorded when it is finished.
+     */
+    class Sample
+    {
+        private final String phase;
+
+        private final String id;
+
+        private final long start = System.currentTimeMillis();
+
+        private long millis;
+
+        private long bytes;
+
+        private int attempts;
+
+        private String outcome;
+
+        private Sample( String phase, String id )
+        {
+            this.phase = phase;
+            this.id = id;
+        }
+
+        void setBytes( long bytes )
+        {
+            this.bytes = bytes;
+        }
+
+        void addAttempt()
+        {
+            attempts++;
+        }
+
+        /**
+         * Records the sample. Only the first call counts.
+         */
+        void finish( String outcome )
+        {
+            synchronized ( samples )
+            {
+                if ( this.outcome != null )
+                {
+                    return;
+                }
+                this.millis = System.currentTimeMillis() - start;
+                this.outcome = outcome;
+                samples.add( this );
+            }
+        }
+    }
+
+    private final List<Sample> samples = new ArrayList<Sample>();
+
+    Sample start( String phase, String id )
+    {
+        return new Sample( phase, id );
+    }
+
+    /**
+     * Forgets the samples without reporting them.
+     */
+    void clear()
+    {
+        synchronized ( samples )
+        {
+            samples.clear();
+        }
+    }
+
+    /**
+     * Writes <code>&lt;name&gt;.json</code> and <code>&lt;name&gt;.csv</code> and forgets the samples.
+     *
+     * @param directory where to write the reports
+     * @param name the base name of the report files
+     */
+    void writeReports( File directory, String name )
+        throws IOException
+    {
+        List<Sample> reported;
+        synchronized ( samples )
+        {
+            reported = new ArrayList<Sample>( samples );
+            samples.clear();
+        }
+
+        directory.mkdirs();
+        writeJson( reported, new File( directory, name + ".json" ) );
+        writeCsv( reported, new File( directory, name + ".csv" ) );
+    }
+
+    private static void writeJson( List<Sample> reported, File file )
+        throws IOException
+    {
+        long bytes = 0;
+        long summedMillis = 0;
+        long firstStart = Long.MAX_VALUE;
+        long lastEnd = Long.MIN_VALUE;
+        for ( Sample sample : reported )
+        {
+            if ( DEPLOY.equals( sample.phase ) )
+            {
+                bytes += sample.bytes;
+                summedMillis += sample.millis;
+                firstStart = Math.min( firstStart, sample.start );
+                lastEnd = Math.max( lastEnd, sample.start + sample.millis );
+            }
+        }
+        // the uploads of several threads overlap, so their summed time can be longer than the time they took
+        long wallMillis = lastEnd >= firstStart ? lastEnd - firstStart : 0;
+
+        Writer out = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            out.write( "{\n  \"timestamp\": " + System.currentTimeMillis() + ",\n" );
+            out.write( "  \"uploadedBytes\": " + bytes + ",\n" );
+            out.write( "  \"uploadWallMillis\": " + wallMillis + ",\n" );
+            out.write( "  \"uploadSummedMillis\": " + summedMillis + ",\n" );
+            out.write( "  \"samples\": [" );
+            for ( int i = 0; i < reported.size(); i++ )
+            {
+                Sample sample = reported.get( i );
+                out.write( i == 0 ? "\n" : ",\n" );
+                out.write( "    {\"phase\": " + quote( sample.phase ) + ", \"artifact\": " + quote( sample.id )
+                    + ", \"start\": " + sample.start + ", \"millis\": " + sample.millis + ", \"bytes\": "
+                    + sample.bytes + ", \"bytesPerSecond\": " + throughput( sample ) + ", \"attempts\": "
+                    + sample.attempts + ", \"outcome\": " + quote( sample.outcome ) + "}" );
+            }
+            out.write( "\n  ]\n}\n" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    private static void writeCsv( List<Sample> reported, File file )
+        throws IOException
+    {
+        Writer out = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            out.write( "phase,artifact,start,millis,bytes,bytesPerSecond,attempts,outcome\n" );
+            for ( Sample sample : reported )
+            {
+                out.write( sample.phase + ',' + sample.id + ',' + sample.start + ',' + sample.millis + ','
+                    + sample.bytes + ',' + throughput( sample ) + ',' + sample.attempts + ',' + sample.outcome
+                    + '\n' );
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    private static long throughput( Sample sample )
+    {
+        return sample.millis > 0 ? sample.bytes * 1000 / sample.millis : 0;
+    }
+
+    static String quote( String value )
+    {
+        StringBuilder quoted = new StringBuilder( "\"" );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' )
+            {
+                quoted.append( '\\' ).append( c );
+            }
+            else if ( c < ' ' )
+            {
+                quoted.append( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                quoted.append( c );
+            }
+        }
+        return quoted.append( '"' ).toString();
+    }
+}
@@ -20,7 +20,9 @@ package org.apache.maven.plugin.deploy;
  */
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.maven.artifact.Artifact;
@@ -30,16 +32,25 @@ import org.apache.maven.artifact.handler.ArtifactHandler;
 import org.apache.maven.artifact.handler.manager.ArtifactHandlerManager;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
-import org.apache.maven.execution.MavenSession;
 import org.apache.maven.lifecycle.LifecycleExecutionException;
 import org.apache.maven.lifecycle.internal.LifecycleDependencyResolver;
+import org.apache.maven.model.Activation;
+import org.apache.maven.model.ActivationOS;
+import org.apache.maven.model.ActivationProperty;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelBuildingRequest;
 import org.apache.maven.model.io.*;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.ProjectBuilder;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.ProjectBuildingRequest;
 
 
 /**
@@ -64,13 +75,6 @@ public class DeployMojo extends AbstractDeployMojo {
      */
     protected MavenProject project;
 
-    /**
-     * @parameter default-value="${session}"
-     * @required
-     * @readonly
-     */
-    protected MavenSession session;
-
     /**
      * @parameter default-value="${project.packaging}"
      * @required
@@ -175,13 +179,99 @@ public class DeployMojo extends AbstractDeployMojo {
      */
     protected ProjectBuilder mavenProjectBuilder;
 
+    /**
+     * Directory of the caches that remember resolved and filtered pom files across builds. Defaults to a directory in
+     * the local repository.
+     *
+     * @parameter expression="${pomCacheDirectory}"
+     */
+    private File pomCacheDirectory;
+
+    /**
+     * Number of resolved pom files remembered across builds. Set to 0 to disable the cache.
+     *
+     * @parameter default-value=1000 expression="${pomCacheSize}"
+     */
+    private int pomCacheSize;
+
+    /**
+     * Set this to 'true' to filter pom files without a parent, profiles, dependencyManagement or property references
+     * in a single streaming pass instead of building a project for them. Other pom files are filtered as usual.
+     *
+     * @parameter default-value=false expression="${streamingPomFilter}"
+     */
+    private boolean streamingPomFilter;
+
+    /**
+     * Set this to 'false' to filter every pom file again instead of reusing the result of an earlier build. Filtered
+     * pom files are cached in the pom cache directory.
+     *
+     * @parameter default-value=true expression="${filteredPomCache}"
+     */
+    private boolean filteredPomCache;
+
+    /**
+     * Number of filtered pom files kept across builds. The least recently used ones are removed.
+     *
+     * @parameter default-value=1000 expression="${filteredPomCacheSize}"
+     */
+    private int filteredPomCacheSize;
+
+    /**
+     * Used to build the effective model of filtered poms
+     *
+     * @parameter expression=
+     * "${component.org.apache.maven.model.building.ModelBuilder}"
+     * @required
+     * @readonly
+     */
+    protected ModelBuilder modelBuilder;
+
+    /**
+     * Set this to 'true' to deploy the artifacts of all projects of the reactor together, once the last project has
+     * been built, instead of deploying every project as soon as it is built. Every project of the reactor must use
+     * this setting.
+     *
+     * @parameter default-value=false expression="${deployAtEnd}"
+     */
+    private boolean deployAtEnd;
+
+    /**
+     * Number of threads that filter pom files ahead of the uploads. Defaults to the number of processors.
+     *
+     * @parameter default-value=0 expression="${filterThreads}"
+     */
+    private int filterThreads;
+
+    /**
+     * Set this to 'true' to only plan the deployment: the artifacts are selected, their poms resolved and filtered as
+     * for a real deployment, but instead of uploading them a deploy-plan report listing every file that would be
+     * uploaded, with the total size and an estimated transfer time, is written to deployReportDirectory. The resolved
+     * and filtered poms are kept in the pom caches for the deployment that follows.
+     *
+     * @parameter default-value=false expression="${dryRun}"
+     */
+    private boolean dryRun;
+
+    /**
+     * Bandwidth to the deployment repository used to estimate the transfer time of a dry run, in bytes per second.
+     *
+     * @parameter default-value=10485760 expression="${planBandwidth}"
+     */
+    private long planBandwidth;
+
+    /**
+     * Fixed cost of an upload request used to estimate the transfer time of a dry run, in milliseconds.
+     *
+     * @parameter default-value=100 expression="${planLatencyMillis}"
+     */
+    private long planLatencyMillis;
+
     /**
      * @parameter
      */
     private List<String> blackListPatterns;
 
-    private List<Pattern> theBlackListPatterns = new LinkedList<Pattern>();
-
     private Map<String, Artifact> pomArtifacts = new HashMap<String, Artifact>();
 
     /**
@@ -189,7 +279,18 @@ public class DeployMojo extends AbstractDeployMojo {
      */
     private List<String> whiteListPatterns;
 
-    private List<Pattern> theWhiteListPatterns = new LinkedList<Pattern>();
+    private ArtifactPolicy artifactPolicy;
+
+    /**
+     * The artifact whose upload schedules the attached artifacts, or null if they are scheduled once all main
+     * artifacts are uploaded.
+     */
+    private volatile Artifact attachedAfter;
+
+    /**
+     * Whether the attached artifacts were handed to the executor, they are scheduled once per execution.
+     */
+    private final AtomicBoolean attachedScheduled = new AtomicBoolean();
 
     public void execute()
             throws MojoExecutionException, MojoFailureException {
@@ -198,7 +299,11 @@ public class DeployMojo extends AbstractDeployMojo {
         toBeDeployedArtifacts.add( project.getArtifact() );
         getLog().debug( "Deploying project: " + project.getArtifactId() );
         try {
-            executeWithArtifacts( toBeDeployedArtifacts );
+            if (deployAtEnd) {
+                deployAtEnd( toBeDeployedArtifacts );
+            } else {
+                executeWithArtifacts( toBeDeployedArtifacts );
+            }
         }
         catch (Exception e) {
             throw new MojoExecutionException( "Error while resolving artifacts", e );
@@ -208,11 +313,95 @@ public class DeployMojo extends AbstractDeployMojo {
     public void executeWithArtifacts(Set<Artifact> toBeDeployedArtifacts)
             throws MojoExecutionException, MojoFailureException, LifecycleExecutionException {
 
+        Batch batch = prepare( toBeDeployedArtifacts );
+        if (batch != null && dryRun) {
+            planBatches( Collections.singletonList( batch ) );
+        } else if (batch != null) {
+            deployBatches( Collections.singletonList( batch ) );
+        }
+    }
+
+    /**
+     * Registers the artifacts of this project for deployment, and deploys the artifacts of all projects when the last
+     * project of the reactor gets here.
+     */
+    private void deployAtEnd(Set<Artifact> toBeDeployedArtifacts)
+            throws MojoExecutionException, MojoFailureException, LifecycleExecutionException {
+
+        Batch batch = prepare( toBeDeployedArtifacts );
+
+        List<MavenProject> projects = session.getProjects();
+        boolean last = project.getId().equals( projects.get( projects.size() - 1 ).getId() );
+        DeferredDeployments deferred = SessionScope.get( session, DeferredDeployments.class );
+        List<Batch> batches = deferred.add( batch, project.getId(), last );
+        if (batches == null) {
+            getLog().info( "Deferring deployment of " + project.getId() + " until the end of the reactor" );
+            return;
+        }
+        if (last) {
+            for (MavenProject other : projects) {
+                if (!deferred.isRegistered( other.getId() )) {
+                    getLog().warn( other.getId() + " did not get to the deploy goal before the last project of the"
+                            + " reactor, its artifacts are not deployed with the others (deployAtEnd)" );
+                }
+            }
+        } else {
+            getLog().warn( "The last project of the reactor already deployed, deploying " + project.getId()
+                    + " on its own (deployAtEnd)" );
+        }
+
+        if (dryRun) {
+            planBatches( batches );
+            return;
+        }
+        getLog().info( "Deploying the artifacts of " + batches.size() + " projects" );
+        deployBatches( batches );
+    }
+
+    /**
+     * Selects the artifacts of this project to deploy and resolves their pom files.
+     *
+     * @return the artifacts to deploy, or null if deployment is skipped
+     */
+    private Batch prepare(Set<Artifact> toBeDeployedArtifacts)
+            throws MojoExecutionException, MojoFailureException, LifecycleExecutionException {
+
         if (skip) {
             getLog().info( "Skipping artifact deployment" );
-            return;
+            return null;
+        }
+
+        ArtifactRepository repo = prepareRepository();
+
+        // create a selection of artifacts that need to be deployed
+        if (deployDependencies) {
+            toBeDeployedArtifacts.clear();
+            toBeDeployedArtifacts.add( project.getArtifact() );
+            toBeDeployedArtifacts.addAll( project.getArtifacts() );
         }
 
+        List<Artifact> selectedArtifacts = selectArtifacts( toBeDeployedArtifacts );
+        if (deployDependencies) {
+            selectedArtifacts = claimDependencies( selectedArtifacts, repo );
+        }
+
+        // resolve all missing pom files in one go before the first upload starts
+        PomCache pomCache = openPomCache();
+        try {
+            resolvePomArtifacts( selectedArtifacts, pomCache );
+        }
+        finally {
+            if (pomCache != null) {
+                pomCache.save();
+            }
+        }
+
+        return new Batch( this, repo, selectedArtifacts );
+    }
+
+    private ArtifactRepository prepareRepository()
+            throws MojoExecutionException, MojoFailureException {
+
         failIfOffline();
 
         populatePatterns();
@@ -228,129 +417,673 @@ public class DeployMojo extends AbstractDeployMojo {
                 sshFile.mkdirs();
             }
         }
+        return repo;
+    }
 
-        // create a selection of artifacts that need to be deployed
-        if (deployDependencies) {
-            toBeDeployedArtifacts.clear();
-            toBeDeployedArtifacts.add( project.getArtifact() );
-            toBeDeployedArtifacts.addAll( project.getArtifacts() );
+    /**
+     * Deploys artifacts that are handed over in chunks while the previous chunks are being uploaded, like the
+     * artifacts find-and-deploy resolves in the background. The poms of every chunk are resolved on the calling
+     * thread and its uploads are scheduled right away; <code>chunks</code> may block until the next chunk is ready.
+     * The <code>deployDependencies</code> expansion does not apply, the chunks hold all artifacts to deploy.
+     */
+    void deployIncrementally(Iterator<Set<Artifact>> chunks)
+            throws MojoExecutionException, MojoFailureException, LifecycleExecutionException {
+
+        if (skip) {
+            getLog().info( "Skipping artifact deployment" );
+            return;
+        }
+
+        ArtifactRepository repo = prepareRepository();
+
+        if (dryRun) {
+            planIncrementally( chunks, repo );
+            return;
         }
 
         int swallowed = 0;
 
-        for (Object iter : toBeDeployedArtifacts) {
-            try {
+        DeployExecutor executor = newDeployExecutor( failureIsAnOption );
+        DeployExecutor filterExecutor = null;
+        if (filterPom) {
+            filterExecutor = newFilterExecutor( failureIsAnOption );
+        }
+        PomCache pomCache = openPomCache();
+        beginMetadataBatch();
+        try {
+            while (chunks.hasNext()) {
+                List<Artifact> selectedArtifacts = selectArtifacts( chunks.next() );
+                resolvePomArtifacts( selectedArtifacts, pomCache );
+                swallowed += scheduleMainArtifacts( new Batch( this, repo, selectedArtifacts ), executor,
+                        filterExecutor );
+            }
+            if (filterExecutor != null) {
+                filterExecutor.await();
+                swallowed += filterExecutor.getSwallowed();
+            }
+            executor.await();
 
-                Artifact artifactTBD = (Artifact) iter;
+            // also when the upload of the project artifact was never submitted, because filtering its pom failed
+            scheduleAttachedArtifacts( repo, executor );
+            executor.await();
 
-                if (!isAuthorized( artifactTBD )) {
-                    getLog().debug( "Skipping artifact: " + artifactTBD.getId() );
-                    continue;
-                }
+            flushMetadataBatch( executor );
+            executor.await();
+            swallowed += executor.getSwallowed();
+        }
+        finally {
+            if (pomCache != null) {
+                pomCache.save();
+            }
+            if (filterExecutor != null) {
+                filterExecutor.shutdown();
+            }
+            executor.shutdown();
+            shutdownChecksumProbe();
+            closeDeploymentLedgers();
+            writeDeployReport( "deploy-report" );
+        }
 
-                getLog().debug( "Deploying artifact: " + artifactTBD.getId() );
+        if (swallowed > 0) {
+            getLog().warn( "I swallowed " + swallowed + " deployment exceptions. If you want me to fail on this please" +
+                           " unset failureIsAnOption" );
+        }
+    }
 
-                if (artifactTBD.getFile() == null && !artifactTBD.getType().equals( "pom" )) {
-                    getLog().debug( "Skipping deployment of " + artifactTBD.getId() );
-                    continue;
-                } else if (artifactTBD.getFile() == null) {
-                    // pom artifact
-                    artifactTBD.setFile( pomFile );
-                }
+    private void planIncrementally(Iterator<Set<Artifact>> chunks, ArtifactRepository repo)
+            throws MojoExecutionException, LifecycleExecutionException {
 
-                Artifact thePomArtifact;
+        List<Artifact> selectedArtifacts = new ArrayList<Artifact>();
+        PomCache pomCache = openPomCache();
+        try {
+            while (chunks.hasNext()) {
+                List<Artifact> chunk = selectArtifacts( chunks.next() );
+                resolvePomArtifacts( chunk, pomCache );
+                selectedArtifacts.addAll( chunk );
+            }
+        }
+        finally {
+            if (pomCache != null) {
+                pomCache.save();
+            }
+        }
+        planBatches( Collections.singletonList( new Batch( this, repo, selectedArtifacts ) ) );
+    }
 
-                if (artifactTBD.getType().equals( "pom" )) {
-                    thePomArtifact = artifactTBD;
-                } else {
+    boolean isFailureIsAnOption() {
+        return failureIsAnOption;
+    }
 
-                    String mapKey = String.format( "%s:%s:%s", artifactTBD.getGroupId(), artifactTBD.getArtifactId(),
-                            artifactTBD.getVersion() );
-                    if (pomArtifacts.containsKey( mapKey )) {
-                        thePomArtifact = pomArtifacts.get( mapKey );
-                    } else {
+    /**
+     * Creates an executor for filtering pom files, sized after the <code>filterThreads</code> parameter. The caller is
+     * responsible for shutting it down.
+     *
+     * @param failureIsAnOption whether failing filter tasks should be logged and counted instead of aborting the deploy
+     * @return a new executor, never <code>null</code>
+     */
+    DeployExecutor newFilterExecutor(boolean failureIsAnOption) {
+        int threads = filterThreads > 0 ? filterThreads : Runtime.getRuntime().availableProcessors();
+        return new DeployExecutor( "filter-pom", threads, failureIsAnOption, getLog() );
+    }
 
-                        thePomArtifact = new DefaultArtifact( artifactTBD.getGroupId(), artifactTBD.getArtifactId(),
-                                artifactTBD.getVersion(), "", "pom", "", new PomArtifactHandler() );
+    /**
+     * Uploads the artifacts of one or more projects on shared executors. The attached artifacts of every project go
+     * after all main artifacts. Every project submits its tasks with its own <code>failureIsAnOption</code>.
+     */
+    private void deployBatches(List<Batch> batches)
+            throws MojoExecutionException {
 
-                        // we resolve the pom file first
-                        HashSet<Artifact> deps = new HashSet<Artifact>();
-                        deps.addAll( project.getDependencyArtifacts() );
-                        deps.add( thePomArtifact );
-                        project.setDependencyArtifacts( deps );
-                        Set<String> scopes = Collections.singleton( Artifact.SCOPE_RUNTIME );
-                        lcdResolver.resolveProjectDependencies( project, scopes, scopes, session, false, Collections.<Artifact>emptySet() );
+        int swallowed = 0;
+
+        boolean filtering = false;
+        for (Batch batch : batches) {
+            filtering |= batch.mojo.filterPom;
+        }
 
-                        pomArtifacts.put( mapKey, thePomArtifact );
+        DeployExecutor executor = newDeployExecutor( failureIsAnOption );
+        DeployExecutor filterExecutor = null;
+        if (filtering) {
+            filterExecutor = newFilterExecutor( failureIsAnOption );
+        }
+        try {
+            for (Batch batch : batches) {
+                batch.mojo.beginMetadataBatch();
+            }
+            for (Batch batch : batches) {
+                swallowed += batch.mojo.scheduleMainArtifacts( batch, executor, filterExecutor );
+            }
+            // every upload is submitted once the filtering is done
+            if (filterExecutor != null) {
+                filterExecutor.await();
+                swallowed += filterExecutor.getSwallowed();
+            }
+            // attached artifacts pick up the resolved version of the main artifact, so they go last
+            executor.await();
+
+            // a no-op for the projects whose project artifact already scheduled them, for the others the project
+            // artifact uploads one after the other or its upload was never submitted because filtering its pom failed
+            for (Batch batch : batches) {
+                batch.mojo.scheduleAttachedArtifacts( batch.repository, executor );
+            }
+            executor.await();
+
+            // with batchMetadata the uploads above only collected the artifacts
+            for (Batch batch : batches) {
+                batch.mojo.flushMetadataBatch( executor );
+            }
+            executor.await();
+            swallowed += executor.getSwallowed();
+        }
+        finally {
+            if (filterExecutor != null) {
+                filterExecutor.shutdown();
+            }
+            executor.shutdown();
+            for (Batch batch : batches) {
+                batch.mojo.shutdownChecksumProbe();
+                batch.mojo.closeDeploymentLedgers();
+                batch.mojo.writeDeployReport( "deploy-report" );
+            }
+        }
+
+        if (swallowed > 0) {
+            getLog().warn( "I swallowed " + swallowed + " deployment exceptions. If you want me to fail on this please" +
+                           " unset failureIsAnOption" );
+        }
+    }
+
+    /**
+     * Writes the plan of the deployment of one or more projects instead of deploying them. The poms are filtered
+     * exactly as for the deployment, so the filtered pom cache is warm for it.
+     */
+    private void planBatches(List<Batch> batches)
+            throws MojoExecutionException {
+
+        DeployPlan plan = new DeployPlan();
+
+        DeployExecutor filterExecutor = null;
+        for (Batch batch : batches) {
+            if (batch.mojo.filterPom && filterExecutor == null) {
+                filterExecutor = newFilterExecutor( false );
+            }
+        }
+        try {
+            for (Batch batch : batches) {
+                batch.mojo.planArtifacts( batch, plan, filterExecutor );
+            }
+        }
+        finally {
+            if (filterExecutor != null) {
+                filterExecutor.shutdown();
+            }
+            for (Batch batch : batches) {
+                batch.mojo.closeDeploymentLedgers();
+            }
+        }
+
+        long estimatedMillis = plan.estimateMillis( planBandwidth, planLatencyMillis, getDeployThreads() );
+        getLog().info( "Dry run: " + plan.getUploadCount() + " uploads, " + plan.getTotalBytes() + " bytes, about "
+                + ( ( estimatedMillis + 999 ) / 1000 ) + "s at " + planBandwidth + " bytes/s" );
+
+        File directory = getDeployReportDirectory();
+        if (directory == null) {
+            getLog().warn( "No deployReportDirectory to write the deploy plan to" );
+            return;
+        }
+        try {
+            plan.write( directory, "deploy-plan", estimatedMillis );
+            getLog().info( "Deploy plan written to " + new File( directory, "deploy-plan.json" ) );
+        }
+        catch (IOException e) {
+            throw new MojoExecutionException( "Could not write the deploy plan: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Adds the uploads of a batch of this project to the plan, in the order the deployment would do them, after
+     * filtering the poms of the batch.
+     */
+    private void planArtifacts(Batch batch, DeployPlan plan, DeployExecutor filterExecutor)
+            throws MojoExecutionException {
+
+        Map<Artifact, List<Artifact>> groups = new IdentityHashMap<Artifact, List<Artifact>>();
+        List<Artifact> thePomArtifacts = groupByPomArtifact( batch.artifacts, groups );
+        sortGroupsLargestFirst( thePomArtifacts, groups );
+
+        if (filterPom) {
+            for (final Artifact thePomArtifact : thePomArtifacts) {
+                filterExecutor.submit( thePomArtifact.getId(), new DeployExecutor.Task() {
+                    public void execute()
+                            throws MojoExecutionException {
+                        filterPom( thePomArtifact );
                     }
-                }
+                } );
+            }
+            filterExecutor.await();
+        }
 
+        String projectId = project.getId();
+        for (Artifact thePomArtifact : thePomArtifacts) {
+            File thePomFile = thePomArtifact.getFile();
+            for (Artifact artifactTBD : groups.get( thePomArtifact )) {
+                File file = artifactTBD.getFile();
+                if ("pom".equals( artifactTBD.getType() )) {
+                    planUpload( plan, projectId, artifactTBD, "pom", thePomFile, batch.repository );
+                } else if (file != null && file.isFile()) {
+                    planUpload( plan, projectId, artifactTBD, "main", file, batch.repository );
+                } else if (!attachedArtifacts.isEmpty()) {
+                    planUpload( plan, projectId, thePomArtifact, "pom", thePomFile, batch.repository );
+                } else {
+                    plan.add( projectId, artifactTBD.getId(), "main", null, "missing" );
+                }
                 if (filterPom) {
-                    filterPom( thePomArtifact );
+                    planUpload( plan, projectId, thePomArtifact, "filtered-pom", thePomFile, batch.repository );
                 }
-                pomFile = thePomArtifact.getFile();
-
-                boolean isPomArtifact = "pom".equals( artifactTBD.getType() );
-
-                try {
-                    if (isPomArtifact) {
-                        deploy( pomFile, artifactTBD, repo, getLocalRepository() );
-                    } else {
-                        File file = artifactTBD.getFile();
-
-                        if (file != null && file.isFile()) {
-                            deploy( file, artifactTBD, repo, getLocalRepository() );
-                        } else if (!attachedArtifacts.isEmpty()) {
-                            getLog().info( "No primary artifact to deploy, deploying attached artifacts instead." );
-
-                            if (updateReleaseInfo) {
-                                thePomArtifact.setRelease( true );
-                            }
-
-                            deploy( pomFile, thePomArtifact, repo, getLocalRepository() );
-
-                            // propagate the timestamped version to the main artifact for the attached artifacts
-                            // to pick it up
-                            artifactTBD.setResolvedVersion( thePomArtifact.getVersion() );
-                        } else {
-                            String message = "The packaging for this project did not " + "assign a file to the build artifact";
-                            System.err.println( "The artifact on which we crash: " + artifactTBD.getId() );
-                            throw new MojoExecutionException( message );
-                        }
-                    }
+            }
+        }
 
-                    if (filterPom) {
-                        deploy( pomFile, thePomArtifact, repo, getLocalRepository() );
-                    }
-                }
-                catch (ArtifactDeploymentException e) {
-                    throw new MojoExecutionException( "Failed to deploy artifact", e );
+        for (Object attachedArtifact : attachedArtifacts) {
+            Artifact attached = (Artifact) attachedArtifact;
+            planUpload( plan, projectId, attached, "attached", attached.getFile(), batch.repository );
+        }
+    }
+
+    private void planUpload(DeployPlan plan, String projectId, Artifact artifact, String role, File file,
+                            ArtifactRepository repo) {
+
+        boolean unchanged = file != null && isUnchanged( file, artifact, repo );
+        plan.add( projectId, artifact.getId(), role, file, unchanged ? DeployPlan.UNCHANGED : DeployPlan.UPLOAD );
+    }
+
+    /**
+     * Hands the main artifacts of a batch of this project to the executors.
+     *
+     * @return the number of failures that were swallowed while scheduling
+     */
+    private int scheduleMainArtifacts(Batch batch, DeployExecutor executor, DeployExecutor filterExecutor)
+            throws MojoExecutionException {
+
+        int swallowed = 0;
+
+        for (Object attachedArtifact : attachedArtifacts) {
+            Artifact attached = (Artifact) attachedArtifact;
+            prefetchChecksum( attached.getFile(), attached, batch.repository );
+        }
+
+        // the attached artifacts follow the project artifact as soon as it is uploaded instead of waiting for all
+        // dependencies, unless the uploads run one after the other anyway; the project artifact is in one chunk only
+        if (getDeployThreads() > 1 && !attachedArtifacts.isEmpty()) {
+            for (Artifact artifactTBD : batch.artifacts) {
+                if (artifactTBD == project.getArtifact()) {
+                    attachedAfter = artifactTBD;
                 }
             }
+        }
+
+        // pom artifacts are compared by identity, the same pom file may be known under two artifacts
+        Map<Artifact, List<Artifact>> groups = new IdentityHashMap<Artifact, List<Artifact>>();
+        List<Artifact> thePomArtifacts = groupByPomArtifact( batch.artifacts, groups );
+        // longest uploads first, so the small ones fill the gaps at the end instead of a big one running alone
+        sortGroupsLargestFirst( thePomArtifacts, groups );
+        for (Artifact thePomArtifact : thePomArtifacts) {
+            try {
+                scheduleArtifacts( thePomArtifact, groups.get( thePomArtifact ), batch.repository, executor,
+                        filterPom ? filterExecutor : null );
+            }
             catch (MojoExecutionException e) {
                 if (!failureIsAnOption)
                     throw e;
                 swallowed++;
-                getLog().warn( "failed to deploy " + ((Artifact) iter).getId() + " but continuing anyway " +
+                getLog().warn( "failed to deploy " + thePomArtifact.getId() + " but continuing anyway " +
                                "(failureIsAnOption)" );
             }
         }
-        for (Iterator i = attachedArtifacts.iterator(); i.hasNext(); ) {
-            Artifact attached = (Artifact) i.next();
-            try {
-                deploy( attached.getFile(), attached, repo, getLocalRepository() );
+        return swallowed;
+    }
+
+    private void scheduleAttachedArtifacts(final ArtifactRepository repository, DeployExecutor executor)
+            throws MojoExecutionException {
+
+        if (!attachedScheduled.compareAndSet( false, true )) {
+            return;
+        }
+
+        List<Artifact> attachedBySize = new ArrayList<Artifact>();
+        for (Object attachedArtifact : attachedArtifacts) {
+            attachedBySize.add( (Artifact) attachedArtifact );
+        }
+        sortLargestFirst( attachedBySize, artifactSizes( attachedBySize, null ) );
+
+        for (final Artifact attached : attachedBySize) {
+            executor.submit( attached.getId(), new DeployExecutor.Task() {
+                public void execute()
+                        throws MojoExecutionException {
+                    try {
+                        deploy( attached.getFile(), attached, repository, getLocalRepository() );
+                    }
+                    catch (ArtifactDeploymentException e) {
+                        throw new MojoExecutionException( "Failed to deploy artifact", e );
+                    }
+                }
+            }, failureIsAnOption );
+        }
+    }
+
+    /**
+     * Drops the artifacts that are not authorized or have nothing to deploy, and assigns the project pom file to
+     * pom artifacts that lack a file.
+     */
+    private List<Artifact> selectArtifacts(Set<Artifact> toBeDeployedArtifacts) {
+
+        List<Artifact> selected = new ArrayList<Artifact>();
+        for (Artifact artifactTBD : toBeDeployedArtifacts) {
+
+            if (!isAuthorized( artifactTBD )) {
+                getLog().debug( "Skipping artifact: " + artifactTBD.getId() );
+                continue;
             }
-            catch (ArtifactDeploymentException e) {
-                if (!failureIsAnOption)
-                    throw new MojoExecutionException( "Failed to deploy artifact", e );
-                swallowed++;
-                getLog().warn( "failed to deploy " + attached.getId() + " but continuing anyway " +
-                               "(failureIsAnOption)" );
+
+            getLog().debug( "Deploying artifact: " + artifactTBD.getId() );
+
+            if (artifactTBD.getFile() == null && !artifactTBD.getType().equals( "pom" )) {
+                getLog().debug( "Skipping deployment of " + artifactTBD.getId() );
+                continue;
+            } else if (artifactTBD.getFile() == null) {
+                // pom artifact
+                artifactTBD.setFile( pomFile );
             }
+
+            selected.add( artifactTBD );
         }
-        if (swallowed > 0) {
-            getLog().warn( "I swallowed " + swallowed + " deployment exceptions. If you want me to fail on this please" +
-                           " unset failureIsAnOption" );
+        return selected;
+    }
+
+    /**
+     * Drops the dependencies that another project of the build already deployed, or is deploying, to the same
+     * repository. Dependencies shared by many modules, like the usual libraries, are uploaded once per build.
+     */
+    private List<Artifact> claimDependencies(List<Artifact> artifacts, ArtifactRepository repo) {
+
+        if (session == null) {
+            return artifacts;
+        }
+
+        SharedDependencies shared = SessionScope.get( session, SharedDependencies.class );
+        String repositoryKey = repo.getId() + '@' + repo.getUrl();
+
+        List<Artifact> claimed = new ArrayList<Artifact>( artifacts.size() );
+        for (Artifact artifactTBD : artifacts) {
+            // the project artifact is claimed too, for the modules that have this project as a dependency
+            boolean first = shared.claim( repositoryKey + ' ' + artifactTBD.getId() + ' ' + checksumOf( artifactTBD ) );
+            if (first || artifactTBD == project.getArtifact()) {
+                claimed.add( artifactTBD );
+            } else {
+                getLog().debug( "Skipping " + artifactTBD.getId() + ", another project of this build deploys it" );
+            }
+        }
+        if (claimed.size() < artifacts.size()) {
+            getLog().info( "Skipping " + ( artifacts.size() - claimed.size() ) + " dependencies already deployed by"
+                    + " other projects of this build" );
+        }
+        return claimed;
+    }
+
+    private String checksumOf(Artifact artifact) {
+
+        File file = artifact.getFile();
+        if (file == null || !file.isFile()) {
+            return "-";
+        }
+        try {
+            return ChecksumUtils.sha1( file );
+        }
+        catch (IOException e) {
+            getLog().debug( "Cannot compute the checksum of " + file + ": " + e.getMessage() );
+            return file.getAbsolutePath();
+        }
+    }
+
+    private PomCache openPomCache() {
+
+        if (pomCacheSize <= 0) {
+            return null;
+        }
+
+        return new PomCache( getCacheDirectory(), pomCacheSize, getLog() );
+    }
+
+    private File getCacheDirectory() {
+
+        if (pomCacheDirectory != null) {
+            return pomCacheDirectory;
+        }
+        return new File( getLocalRepository().getBasedir(), ".cache/maven-deploy-plugin" );
+    }
+
+    /**
+     * Creates a pom artifact for every non-pom artifact whose pom we have not seen yet. Those that are not in the
+     * pom cache are resolved with a single call to the dependency resolver.
+     */
+    private void resolvePomArtifacts(Collection<Artifact> artifacts, PomCache pomCache)
+            throws LifecycleExecutionException {
+
+        Set<Artifact> missing = new LinkedHashSet<Artifact>();
+        for (Artifact artifactTBD : artifacts) {
+            if (artifactTBD.getType().equals( "pom" )) {
+                continue;
+            }
+
+            String mapKey = pomArtifactKey( artifactTBD );
+            if (!pomArtifacts.containsKey( mapKey )) {
+                Artifact thePomArtifact = new DefaultArtifact( artifactTBD.getGroupId(), artifactTBD.getArtifactId(),
+                        artifactTBD.getVersion(), "", "pom", "", new PomArtifactHandler() );
+                pomArtifacts.put( mapKey, thePomArtifact );
+
+                File cachedPom = pomCache != null && !thePomArtifact.isSnapshot() ? pomCache.get( mapKey ) : null;
+                if (cachedPom != null) {
+                    getLog().debug( "Using cached pom file for " + mapKey + ": " + cachedPom );
+                    thePomArtifact.setFile( cachedPom );
+                    thePomArtifact.setResolved( true );
+                    getMetrics().start( DeployMetrics.RESOLVE, thePomArtifact.getId() ).finish( "cached" );
+                } else {
+                    missing.add( thePomArtifact );
+                }
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        getLog().debug( "Resolving " + missing.size() + " pom files" );
+        // the poms are resolved together, so every one of them is reported with the time of the whole batch
+        List<DeployMetrics.Sample> samples = new ArrayList<DeployMetrics.Sample>();
+        for (Artifact thePomArtifact : missing) {
+            samples.add( getMetrics().start( DeployMetrics.RESOLVE, thePomArtifact.getId() ) );
+        }
+        HashSet<Artifact> deps = new HashSet<Artifact>();
+        deps.addAll( project.getDependencyArtifacts() );
+        deps.addAll( missing );
+        project.setDependencyArtifacts( deps );
+        Set<String> scopes = Collections.singleton( Artifact.SCOPE_RUNTIME );
+        lcdResolver.resolveProjectDependencies( project, scopes, scopes, session, false, Collections.<Artifact>emptySet() );
+
+        Iterator<DeployMetrics.Sample> sampleIterator = samples.iterator();
+        for (Artifact thePomArtifact : missing) {
+            sampleIterator.next().finish( thePomArtifact.getFile() != null ? "resolved" : "unresolved" );
+        }
+
+        if (pomCache != null) {
+            for (Artifact thePomArtifact : missing) {
+                if (thePomArtifact.getFile() != null && !thePomArtifact.isSnapshot()) {
+                    pomCache.put( pomArtifactKey( thePomArtifact ), thePomArtifact.getFile() );
+                }
+            }
+        }
+    }
+
+    private static String pomArtifactKey(Artifact artifact) {
+
+        return String.format( "%s:%s:%s", artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion() );
+    }
+
+    /**
+     * Groups the artifacts by the pom artifact that is deployed with them. Artifacts with the same coordinates share
+     * their pom artifact, which must only be filtered once.
+     *
+     * @return the pom artifacts in the order they are first needed
+     */
+    private List<Artifact> groupByPomArtifact(List<Artifact> artifacts, Map<Artifact, List<Artifact>> groups) {
+
+        List<Artifact> thePomArtifacts = new ArrayList<Artifact>();
+        for (Artifact artifactTBD : artifacts) {
+            Artifact thePomArtifact;
+            if (artifactTBD.getType().equals( "pom" )) {
+                thePomArtifact = artifactTBD;
+            } else {
+                thePomArtifact = pomArtifacts.get( pomArtifactKey( artifactTBD ) );
+            }
+
+            List<Artifact> group = groups.get( thePomArtifact );
+            if (group == null) {
+                group = new ArrayList<Artifact>();
+                groups.put( thePomArtifact, group );
+                thePomArtifacts.add( thePomArtifact );
+            }
+            group.add( artifactTBD );
+        }
+        return thePomArtifacts;
+    }
+
+    /**
+     * Hands the uploads of the artifacts that share a pom to the executor. When filtering, the pom is filtered on the
+     * filter executor first, and the uploads are submitted as soon as it is done.
+     */
+    private void scheduleArtifacts(final Artifact thePomArtifact, final List<Artifact> artifacts,
+                                   final ArtifactRepository repo, final DeployExecutor executor,
+                                   DeployExecutor filterExecutor)
+            throws MojoExecutionException {
+
+        if (filterExecutor == null) {
+            submitUploads( thePomArtifact, artifacts, repo, executor );
+            return;
+        }
+
+        filterExecutor.submit( thePomArtifact.getId(), new DeployExecutor.Task() {
+            public void execute()
+                    throws MojoExecutionException {
+                filterPom( thePomArtifact );
+                submitUploads( thePomArtifact, artifacts, repo, executor );
+            }
+        }, failureIsAnOption );
+    }
+
+    private void submitUploads(final Artifact thePomArtifact, List<Artifact> artifacts, final ArtifactRepository repo,
+                               final DeployExecutor executor)
+            throws MojoExecutionException {
+
+        final File thePomFile = thePomArtifact.getFile();
+        if (filterPom) {
+            prefetchChecksum( thePomFile, thePomArtifact, repo );
+        }
+
+        artifacts = new ArrayList<Artifact>( artifacts );
+        sortLargestFirst( artifacts, artifactSizes( artifacts, thePomFile ) );
+        for (final Artifact artifactTBD : artifacts) {
+            prefetchChecksum( "pom".equals( artifactTBD.getType() ) ? thePomFile : artifactTBD.getFile(), artifactTBD,
+                    repo );
+
+            executor.submit( artifactTBD.getId(), new DeployExecutor.Task() {
+                public void execute()
+                        throws MojoExecutionException {
+                    try {
+                        upload( artifactTBD, thePomArtifact, thePomFile, repo );
+                    }
+                    catch (MojoExecutionException e) {
+                        // without their main artifact the attached artifacts are only deployed when failure is an
+                        // option, like in the sequential deployment
+                        if (failureIsAnOption && artifactTBD == attachedAfter) {
+                            scheduleAttachedArtifacts( repo, executor );
+                        }
+                        throw e;
+                    }
+                    if (artifactTBD == attachedAfter) {
+                        scheduleAttachedArtifacts( repo, executor );
+                    }
+                }
+            }, failureIsAnOption );
+        }
+    }
+
+    /**
+     * @return the number of bytes each artifact uploads, its file or the pom file for pom artifacts
+     */
+    private Map<Artifact, Long> artifactSizes(List<Artifact> artifacts, File thePomFile) {
+
+        Map<Artifact, Long> sizes = new IdentityHashMap<Artifact, Long>();
+        for (Artifact artifactTBD : artifacts) {
+            File file = "pom".equals( artifactTBD.getType() ) ? thePomFile : artifactTBD.getFile();
+            sizes.put( artifactTBD, Long.valueOf( file != null ? file.length() : 0 ) );
+        }
+        return sizes;
+    }
+
+    /**
+     * Orders the pom artifacts by the number of bytes uploaded with them, largest first.
+     */
+    private void sortGroupsLargestFirst(List<Artifact> thePomArtifacts, Map<Artifact, List<Artifact>> groups) {
+
+        Map<Artifact, Long> sizes = new IdentityHashMap<Artifact, Long>();
+        for (Artifact thePomArtifact : thePomArtifacts) {
+            long size = 0;
+            for (Long artifactSize : artifactSizes( groups.get( thePomArtifact ), thePomArtifact.getFile() ).values()) {
+                size += artifactSize.longValue();
+            }
+            sizes.put( thePomArtifact, Long.valueOf( size ) );
+        }
+        sortLargestFirst( thePomArtifacts, sizes );
+    }
+
+    /**
+     * Uploads an artifact and, when filtering, its filtered POM. The POM always goes after the binary.
+     */
+    private void upload(Artifact artifactTBD, Artifact thePomArtifact, File thePomFile, ArtifactRepository repo)
+            throws MojoExecutionException {
+
+        boolean isPomArtifact = "pom".equals( artifactTBD.getType() );
+
+        try {
+            if (isPomArtifact) {
+                deploy( thePomFile, artifactTBD, repo, getLocalRepository() );
+            } else {
+                File file = artifactTBD.getFile();
+
+                if (file != null && file.isFile()) {
+                    deploy( file, artifactTBD, repo, getLocalRepository() );
+                } else if (!attachedArtifacts.isEmpty()) {
+                    getLog().info( "No primary artifact to deploy, deploying attached artifacts instead." );
+
+                    if (updateReleaseInfo) {
+                        thePomArtifact.setRelease( true );
+                    }
+
+                    deploy( thePomFile, thePomArtifact, repo, getLocalRepository() );
+
+                    // propagate the timestamped version to the main artifact for the attached artifacts
+                    // to pick it up
+                    artifactTBD.setResolvedVersion( thePomArtifact.getVersion() );
+                } else {
+                    throw new MojoExecutionException( "The packaging for this project did not assign a file to the "
+                        + "build artifact " + artifactTBD.getId() );
+                }
+            }
+
+            if (filterPom) {
+                deploy( thePomFile, thePomArtifact, repo, getLocalRepository() );
+            }
+        }
+        catch (ArtifactDeploymentException e) {
+            throw new MojoExecutionException( "Failed to deploy artifact", e );
         }
     }
 
@@ -395,6 +1128,22 @@ public class DeployMojo extends AbstractDeployMojo {
     private void filterPom(Artifact thePomArtifact)
             throws MojoExecutionException {
 
+        DeployMetrics.Sample sample = getMetrics().start( DeployMetrics.FILTER, thePomArtifact.getId() );
+        String outcome = "failed";
+        try {
+            outcome = filterPomFile( thePomArtifact );
+        }
+        finally {
+            sample.finish( outcome );
+        }
+    }
+
+    /**
+     * @return how the pom file was filtered, for the deploy report
+     */
+    private String filterPomFile(Artifact thePomArtifact)
+            throws MojoExecutionException {
+
         getLog().debug( "Filtering pom file: " + thePomArtifact.getId() );
 
         if (!thePomArtifact.getType().equals( "pom" )) {
@@ -402,6 +1151,28 @@ public class DeployMojo extends AbstractDeployMojo {
             throw new MojoExecutionException( "Don't ask me to filter a non pom file" );
         }
 
+        FilteredPomCache cache = null;
+        String cacheKey = null;
+        if (filteredPomCache && filteredPomCacheSize > 0) {
+            cache = new FilteredPomCache( new File( getCacheDirectory(), "filtered-poms" ), getLocalRepository(),
+                    filteredPomCacheSize, getLog() );
+            String environment = getFilterEnvironment();
+            cacheKey = environment == null ? null : cache.key( thePomArtifact.getFile(), environment );
+            File cached = cacheKey == null ? null : cache.get( cacheKey );
+            if (cached != null) {
+                getLog().debug( "Using cached filtered pom file for " + thePomArtifact.getId() + ": " + cached );
+                thePomArtifact.setFile( cached );
+                return "cached";
+            }
+        }
+
+        if (streamingPomFilter && filterPomStreaming( thePomArtifact )) {
+            if (cacheKey != null) {
+                cache.put( cacheKey, thePomArtifact.getFile() );
+            }
+            return "streamed";
+        }
+
         try {
             // Try to remove the broken distributionmanagement element from downloaded poms
             // otherwise maven might refuse to parse those poms to projects
@@ -422,12 +1193,16 @@ public class DeployMojo extends AbstractDeployMojo {
             modelWriter.write( tempFile, null, brokenModel );
             thePomArtifact.setFile( tempFile );
 
-            // first build a project from the pom artifact
-            MavenProject bareProject = mavenProjectBuilder.build( thePomArtifact.getFile(), project.getProjectBuildingRequest() )
-                                                          .getProject();
+            // first build the effective model of the pom artifact, from a project if the parents are not local
+            Model currentModel = buildEffectiveModel( thePomArtifact.getFile() );
+            if (currentModel == null) {
+                // the request is copied, as poms are filtered on several threads at once
+                MavenProject bareProject = mavenProjectBuilder.build( thePomArtifact.getFile(),
+                        new DefaultProjectBuildingRequest( project.getProjectBuildingRequest() ) ).getProject();
+                currentModel = bareProject.getModel();
+            }
 
-            // get the model and start filtering useless stuff
-            Model currentModel = bareProject.getModel();
+            // start filtering useless stuff
 
             currentModel.setPackaging( theRealPackaging );
             currentModel.setParent( null );
@@ -449,7 +1224,7 @@ public class DeployMojo extends AbstractDeployMojo {
             currentModel.setUrl( null );
 
             List<Dependency> goodDeps = new ArrayList<Dependency>();
-            for (Object obj : bareProject.getDependencies()) {
+            for (Object obj : currentModel.getDependencies()) {
                 Dependency dep = (Dependency) obj;
 
                 String scope = dep.getScope();
@@ -466,44 +1241,213 @@ public class DeployMojo extends AbstractDeployMojo {
             // spit the merged model to the output file.
             getLog().debug( "Overwriting pom file with filtered pom: " + thePomArtifact.getFile().getAbsolutePath() );
             modelWriter.write( thePomArtifact.getFile(), null, currentModel );
+
+            if (cacheKey != null) {
+                cache.put( cacheKey, thePomArtifact.getFile() );
+            }
+            return "filtered";
         }
         catch (Exception e) {
             throw new MojoExecutionException( e.getMessage(), e );
         }
     }
 
-    private void populatePatterns() {
+    /**
+     * Builds the effective model of a pom file with parents and imports from the local repository. The parsed
+     * parents are kept in a cache that all filtered pom files of the build share.
+     *
+     * @return the effective model, or null if something it depends on is not in the local repository
+     */
+    private Model buildEffectiveModel(File thePomFile) {
+
+        ProjectBuildingRequest projectRequest = project.getProjectBuildingRequest();
+
+        ModelBuildingRequest request = new DefaultModelBuildingRequest();
+        request.setPomFile( thePomFile );
+        request.setValidationLevel( ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL );
+        request.setProcessPlugins( false );
+        request.setTwoPhaseBuilding( false );
+        request.setSystemProperties( projectRequest.getSystemProperties() );
+        request.setUserProperties( projectRequest.getUserProperties() );
+        request.setActiveProfileIds( projectRequest.getActiveProfileIds() );
+        request.setInactiveProfileIds( projectRequest.getInactiveProfileIds() );
+        request.setProfiles( projectRequest.getProfiles() );
+        request.setBuildStartTime( projectRequest.getBuildStartTime() );
+        request.setModelResolver( new LocalRepositoryModelResolver( getLocalRepository() ) );
+        request.setModelCache( SessionScope.get( session, SharedModelCache.class ) );
+
+        try {
+            return modelBuilder.build( request ).getEffectiveModel();
+        }
+        catch (ModelBuildingException e) {
+            getLog().debug( "Cannot build the effective model of " + thePomFile + " from the local repository: " +
+                            e.getMessage() );
+            return null;
+        }
+    }
 
-        if (blackListPatterns != null) {
-            for (String blackList : blackListPatterns) {
-                getLog().debug( "Adding black list pattern: " + blackList );
-                theBlackListPatterns.add( Pattern.compile( blackList ) );
+    /**
+     * Tries to filter a pom file in a single pass.
+     *
+     * @return false if the pom file needs the regular filter
+     */
+    private boolean filterPomStreaming(Artifact thePomArtifact)
+            throws MojoExecutionException {
+
+        try {
+            File tempFile = File.createTempFile( "deploy-plugin", "pom" );
+            StreamingPomFilter streamingFilter = new StreamingPomFilter();
+            if (streamingFilter.filter( thePomArtifact.getFile(), tempFile )) {
+                getLog().debug( "Filtered pom file in a single pass: " + thePomArtifact.getId() );
+                thePomArtifact.setFile( tempFile );
+                return true;
             }
+            getLog().debug( "Cannot filter " + thePomArtifact.getId() + " in a single pass, " +
+                            streamingFilter.getReason() );
+            return false;
         }
-        if (whiteListPatterns != null) {
-            for (String whiteList : whiteListPatterns) {
-                getLog().debug( "Adding white list pattern: " + whiteList );
-                theWhiteListPatterns.add( Pattern.compile( whiteList ) );
+        catch (IOException e) {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Describes the parts of the build that influence the effective model of a pom file: the requested profiles, the
+     * profiles of the settings, the user properties and the system properties, which hold the environment variables
+     * as <code>env.*</code> and what profiles can be activated on.
+     *
+     * @return the description, or null if a profile of the settings is activated by a file, which no key can capture
+     */
+    private String getFilterEnvironment() {
+
+        ProjectBuildingRequest request = project.getProjectBuildingRequest();
+        StringBuilder environment = new StringBuilder();
+        environment.append( request.getActiveProfileIds() ).append( '\n' );
+        environment.append( request.getInactiveProfileIds() ).append( '\n' );
+        environment.append( new TreeMap<Object, Object>( request.getUserProperties() ) ).append( '\n' );
+        environment.append( new TreeMap<Object, Object>( request.getSystemProperties() ) ).append( '\n' );
+        environment.append( streamingPomFilter ).append( '\n' );
+        for (Profile profile : request.getProfiles()) {
+            Activation activation = profile.getActivation();
+            if (activation != null && activation.getFile() != null) {
+                getLog().debug( "Not caching filtered poms, the profile " + profile.getId() + " of the settings is"
+                        + " activated by a file" );
+                return null;
             }
+            environment.append( profile.getId() ).append( '\n' );
+            environment.append( describe( activation ) ).append( '\n' );
+            environment.append( new TreeMap<Object, Object>( profile.getProperties() ) ).append( '\n' );
+        }
+        return environment.toString();
+    }
+
+    private static String describe(Activation activation) {
+
+        if (activation == null) {
+            return "-";
+        }
+        StringBuilder description = new StringBuilder();
+        description.append( activation.isActiveByDefault() ).append( ' ' ).append( activation.getJdk() );
+        ActivationOS os = activation.getOs();
+        if (os != null) {
+            description.append( " os " ).append( os.getName() ).append( ' ' ).append( os.getFamily() ).append( ' ' )
+                    .append( os.getArch() ).append( ' ' ).append( os.getVersion() );
+        }
+        ActivationProperty property = activation.getProperty();
+        if (property != null) {
+            description.append( " property " ).append( property.getName() ).append( '=' )
+                    .append( property.getValue() );
+        }
+        return description.toString();
+    }
+
+    private void populatePatterns() {
+
+        // the patterns are compiled only once, also when the mojo is executed again
+        if (artifactPolicy == null) {
+            artifactPolicy = new ArtifactPolicy( blackListPatterns, whiteListPatterns, getLog() );
         }
     }
 
     private boolean isAuthorized(Artifact artifact) {
 
-        String target = artifact.getId();
-        for (Pattern black : theBlackListPatterns) {
-            if (black.matcher( target ).matches()) {
-                getLog().debug( target + " matches blacklist pattern " + black.toString() );
-                return false;
-            }
+        return artifactPolicy.isAuthorized( artifact.getId() );
+    }
+
+    /**
+     * The artifacts one project deploys, with the mojo that prepared them.
+     */
+    private static class Batch {
+
+        private final DeployMojo mojo;
+
+        private final ArtifactRepository repository;
+
+        private final List<Artifact> artifacts;
+
+        private Batch(DeployMojo mojo, ArtifactRepository repository, List<Artifact> artifacts) {
+
+            this.mojo = mojo;
+            this.repository = repository;
+            this.artifacts = artifacts;
         }
-        for (Pattern white : theWhiteListPatterns) {
-            if (!white.matcher( target ).matches()) {
-                getLog().debug( target + " not matches whitelist pattern " + white.toString() );
-                return false;
+    }
+
+    /**
+     * Collects the batches of the projects of a reactor for deployAtEnd, shared through the {@link SessionScope}.
+     */
+    static class DeferredDeployments {
+
+        private final List<Batch> batches = new ArrayList<Batch>();
+
+        private final Set<String> registered = new HashSet<String>();
+
+        private boolean deployed;
+
+        /**
+         * @param batch the batch of a project, or null if the project deploys nothing
+         * @param projectId the id of the project
+         * @param last whether the project is the last project of the reactor
+         * @return all batches when this is the last project of the reactor, the batch alone when the last project
+         *         already deployed, otherwise null
+         */
+        synchronized List<Batch> add(Batch batch, String projectId, boolean last) {
+
+            registered.add( projectId );
+            if (batch != null) {
+                batches.add( batch );
+            }
+            if (!last && !deployed) {
+                return null;
             }
+
+            deployed = true;
+            List<Batch> all = new ArrayList<Batch>( batches );
+            batches.clear();
+            return all;
+        }
+
+        synchronized boolean isRegistered(String projectId) {
+
+            return registered.contains( projectId );
+        }
+    }
+
+    /**
+     * The dependencies scheduled for deployment by the projects of a build, shared through the {@link SessionScope}.
+     * An artifact is known by its repository, id and checksum.
+     */
+    static class SharedDependencies {
+
+        private final Set<String> claimed = new HashSet<String>();
+
+        /**
+         * @return true if the caller is the first to deploy the artifact and should deploy it
+         */
+        synchronized boolean claim(String key) {
+
+            return claimed.add( key );
         }
-        return true;
     }
 
     static class PomArtifactHandler implements ArtifactHandler {
@@ -0,0 +1,190 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The uploads a deployment would do, collected by a dry run instead of uploading. Every upload has the file that
+ * would be sent and its size; uploads that would be skipped because the deployment ledger knows the file are listed
+ * with no bytes. The plan is written as a JSON and a CSV report, with an estimate of the transfer time.
+ *
+ * @version $Id$
+ */
+class DeployPlan
+{
+    static final String UPLOAD = "upload";
+
+    static final String UNCHANGED = "unchanged";
+
+    /**
+     * One file that would be uploaded.
+     */
+    private static class Upload
+    {
+        private final String project;
+
+        private final String artifact;
+
+        private final String role;
+
+        private final File file;
+
+        private final long bytes;
+
+        private final String action;
+
+        private Upload( String project, String artifact, String role, File file, long bytes, String action )
+        {
+            this.project = project;
+            this.artifact = artifact;
+            this.role = role;
+            this.file = file;
+            this.bytes = bytes;
+            this.action = action;
+        }
+    }
+
+    private final List<Upload> uploads = new ArrayList<Upload>();
+
+    /**
+     * @param project the project deploying the file
+     * @param artifact the id of the artifact the file is deployed as
+     * @param role what the file is, like <code>main</code>, <code>pom</code>, <code>filtered-pom</code> or
+     *            <code>attached</code>
+     * @param file the file, may be <code>null</code> when the deployment would fail for lack of a file
+     * @param action {@link #UPLOAD} or {@link #UNCHANGED}
+     */
+    synchronized void add( String project, String artifact, String role, File file, String action )
+    {
+        long bytes = UPLOAD.equals( action ) && file != null ? file.length() : 0;
+        uploads.add( new Upload( project, artifact, role, file, bytes, action ) );
+    }
+
+    synchronized int getUploadCount()
+    {
+        int count = 0;
+        for ( Upload upload : uploads )
+        {
+            if ( UPLOAD.equals( upload.action ) )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized long getTotalBytes()
+    {
+        long bytes = 0;
+        for ( Upload upload : uploads )
+        {
+            bytes += upload.bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the transfer time: all the bytes through the link, plus the latency of every upload request, spread
+     * over the upload threads.
+     *
+     * @param bytesPerSecond the bandwidth of the link to the repository
+     * @param latencyMillis the fixed cost of one upload request
+     * @param threads the number of upload threads
+     * @return the estimated time in milliseconds
+     */
+    long estimateMillis( long bytesPerSecond, long latencyMillis, int threads )
+    {
+        long transfer = bytesPerSecond > 0 ? getTotalBytes() * 1000 / bytesPerSecond : 0;
+        long requests = (long) getUploadCount() * Math.max( 0, latencyMillis ) / Math.max( 1, threads );
+        return transfer + requests;
+    }
+
+    /**
+     * Writes <code>&lt;name&gt;.json</code> and <code>&lt;name&gt;.csv</code>.
+     *
+     * @param directory where to write the reports
+     * @param name the base name of the report files
+     * @param estimatedMillis the estimated transfer time
+     */
+    synchronized void write( File directory, String name, long estimatedMillis )
+        throws IOException
+    {
+        directory.mkdirs();
+        writeJson( new File( directory, name + ".json" ), estimatedMillis );
+        writeCsv( new File( directory, name + ".csv" ) );
+    }
+
+    private void writeJson( File file, long estimatedMillis )
+        throws IOException
+    {
+        Writer out = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            out.write( "{\n  \"timestamp\": " + System.currentTimeMillis() + ",\n" );
+            out.write( "  \"uploads\": " + getUploadCount() + ",\n" );
+            out.write( "  \"totalBytes\": " + getTotalBytes() + ",\n" );
+            out.write( "  \"estimatedMillis\": " + estimatedMillis + ",\n" );
+            out.write( "  \"files\": [" );
+            for ( int i = 0; i < uploads.size(); i++ )
+            {
+                Upload upload = uploads.get( i );
+                out.write( i == 0 ? "\n" : ",\n" );
+                out.write( "    {\"project\": " + DeployMetrics.quote( upload.project ) + ", \"artifact\": "
+                    + DeployMetrics.quote( upload.artifact ) + ", \"role\": " + DeployMetrics.quote( upload.role )
+                    + ", \"file\": " + ( upload.file != null ? DeployMetrics.quote( upload.file.getPath() ) : "null" )
+                    + ", \"bytes\": " + upload.bytes + ", \"action\": " + DeployMetrics.quote( upload.action ) + "}" );
+            }
+            out.write( "\n  ]\n}\n" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    private void writeCsv( File file )
+        throws IOException
+    {
+        Writer out = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            out.write( "project,artifact,role,file,bytes,action\n" );
+            for ( Upload upload : uploads )
+            {
+                out.write( upload.project + ',' + upload.artifact + ',' + upload.role + ','
+                    + ( upload.file != null ? upload.file.getPath() : "" ) + ',' + upload.bytes + ','
+                    + upload.action + '\n' );
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+}
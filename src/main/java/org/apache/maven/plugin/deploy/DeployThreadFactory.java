@@ -0,0 +1,48 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the named daemon threads used by the plugin's worker pools, so a forgotten pool never keeps Maven alive.
+ *
+ * @version $Id$
+ */
+class DeployThreadFactory
+    implements ThreadFactory
+{
+    private final String prefix;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    DeployThreadFactory( String prefix )
+    {
+        this.prefix = prefix;
+    }
+
+    public Thread newThread( Runnable runnable )
+    {
+        Thread thread = new Thread( runnable, prefix + "-" + count.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+    }
+}
@@ -0,0 +1,308 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Remembers which release artifacts were successfully deployed to one repository, with the size and SHA-1 of the
+ * file that was uploaded. The ledger is an append-only text file with one record per upload; when it is opened the
+ * records are read into an in-memory index, where later records replace earlier ones. A ledger that holds many
+ * superseded records is rewritten compactly when it is opened. All mojos of a build share the ledger of a repository
+ * through the {@link Registry}, so the file is opened and compacted once and only one writer appends to it.
+ *
+ * @version $Id$
+ */
+class DeploymentLedger
+{
+    /**
+     * The ledgers opened in one build, shared through the {@link SessionScope}.
+     */
+    static class Registry
+    {
+        private final Map<File, DeploymentLedger> ledgers = new HashMap<File, DeploymentLedger>();
+
+        /**
+         * @return the ledger of the repository, opened on the first call
+         * @see DeploymentLedger#DeploymentLedger(File, String, String, Log)
+         */
+        synchronized DeploymentLedger get( File directory, String repositoryId, String repositoryUrl, Log log )
+        {
+            File file = new File( directory, fileName( repositoryId, repositoryUrl ) ).getAbsoluteFile();
+            DeploymentLedger ledger = ledgers.get( file );
+            if ( ledger == null )
+            {
+                ledger = new DeploymentLedger( directory, repositoryId, repositoryUrl, log );
+                ledgers.put( file, ledger );
+            }
+            return ledger;
+        }
+    }
+
+    private static final int COMPACTION_SLACK = 1000;
+
+    private final File file;
+
+    private final Log log;
+
+    private final Map<String, Record> records = new HashMap<String, Record>();
+
+    private Writer writer;
+
+    /**
+     * Opens the ledger of a repository, creating it on the first record.
+     *
+     * @param directory the directory holding the ledgers
+     * @param repositoryId the id of the repository
+     * @param repositoryUrl the url of the repository, so a changed url does not reuse an old ledger
+     * @param log where to report problems with the ledger
+     */
+    DeploymentLedger( File directory, String repositoryId, String repositoryUrl, Log log )
+    {
+        this.file = new File( directory, fileName( repositoryId, repositoryUrl ) );
+        this.log = log;
+        load();
+    }
+
+    /**
+     * @param source the file about to be deployed
+     * @param pomFile the POM deployed along with it, or <code>null</code>
+     * @param artifact the artifact about to be deployed
+     * @return <code>true</code> if exactly these files were deployed for the artifact before
+     */
+    boolean isUnchanged( File source, File pomFile, Artifact artifact )
+    {
+        if ( source == null || artifact.isSnapshot() )
+        {
+            return false;
+        }
+
+        return matches( source, lookup( key( artifact, artifact.getType(), artifact.getClassifier() ) ) )
+            && ( pomFile == null || matches( pomFile, lookup( key( artifact, "pom", null ) ) ) );
+    }
+
+    /**
+     * Appends a successful deployment to the ledger. The files are checksummed before the ledger is locked, the
+     * threads of a build only wait for each other to update the index and append to the file.
+     *
+     * @param source the file that was deployed
+     * @param pomFile the POM deployed along with it, or <code>null</code>
+     * @param artifact the artifact that was deployed
+     */
+    void record( File source, File pomFile, Artifact artifact )
+    {
+        if ( source == null || artifact.isSnapshot() )
+        {
+            return;
+        }
+
+        try
+        {
+            Record record = new Record( source.length(), ChecksumUtils.sha1( source ) );
+            Record pomRecord = pomFile != null ? new Record( pomFile.length(), ChecksumUtils.sha1( pomFile ) ) : null;
+            append( key( artifact, artifact.getType(), artifact.getClassifier() ), record, key( artifact, "pom", null ),
+                    pomRecord );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not update the deployment ledger " + file + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Closes the file of the ledger. The next record opens it again.
+     */
+    synchronized void close()
+    {
+        IOUtil.close( writer );
+        writer = null;
+    }
+
+    private synchronized Record lookup( String key )
+    {
+        return records.get( key );
+    }
+
+    private boolean matches( File source, Record record )
+    {
+        if ( record == null || record.size != source.length() )
+        {
+            return false;
+        }
+
+        try
+        {
+            return record.sha1.equals( ChecksumUtils.sha1( source ) );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Cannot checksum " + source + ": " + e.getMessage() );
+            return false;
+        }
+    }
+
+    /**
+     * @param pomRecord the record of the POM, or <code>null</code> if no POM was deployed along with the artifact
+     */
+    private synchronized void append( String key, Record record, String pomKey, Record pomRecord )
+        throws IOException
+    {
+        if ( writer == null )
+        {
+            file.getParentFile().mkdirs();
+            writer = new OutputStreamWriter( new FileOutputStream( file, true ), "UTF-8" );
+        }
+        records.put( key, record );
+        write( writer, key, record );
+        if ( pomRecord != null )
+        {
+            records.put( pomKey, pomRecord );
+            write( writer, pomKey, pomRecord );
+        }
+        writer.flush();
+    }
+
+    private static String fileName( String repositoryId, String repositoryUrl )
+    {
+        return repositoryId.replaceAll( "[^A-Za-z0-9._-]", "_" ) + '-' + Integer.toHexString( repositoryUrl.hashCode() )
+            + ".ledger";
+    }
+
+    private static String key( Artifact artifact, String type, String classifier )
+    {
+        return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getBaseVersion() + ':' + type
+            + ':' + ( classifier == null ? "" : classifier );
+    }
+
+    private static void write( Writer writer, String key, Record record )
+        throws IOException
+    {
+        writer.write( key + '\t' + record.size + '\t' + record.sha1 + '\n' );
+    }
+
+    private void load()
+    {
+        if ( !file.isFile() )
+        {
+            return;
+        }
+
+        int lines = 0;
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ), 65536 );
+            for ( String line = reader.readLine(); line != null; line = reader.readLine() )
+            {
+                lines++;
+                int sizeStart = line.indexOf( '\t' );
+                int sha1Start = line.indexOf( '\t', sizeStart + 1 );
+                if ( sizeStart > 0 && sha1Start > 0 )
+                {
+                    try
+                    {
+                        long size = Long.parseLong( line.substring( sizeStart + 1, sha1Start ) );
+                        records.put( line.substring( 0, sizeStart ), new Record( size, line.substring( sha1Start + 1 ) ) );
+                    }
+                    catch ( NumberFormatException e )
+                    {
+                        // a torn record from an interrupted build, dropped by the next compaction
+                    }
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not read the deployment ledger " + file + ", ignoring it: " + e.getMessage() );
+            records.clear();
+            return;
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+
+        if ( lines > records.size() * 2 + COMPACTION_SLACK )
+        {
+            compact();
+        }
+    }
+
+    private void compact()
+    {
+        log.debug( "Compacting deployment ledger " + file );
+
+        Writer compacted = null;
+        try
+        {
+            File tempFile = File.createTempFile( file.getName(), ".tmp", file.getParentFile() );
+            compacted = new OutputStreamWriter( new FileOutputStream( tempFile ), "UTF-8" );
+            for ( Map.Entry<String, Record> entry : records.entrySet() )
+            {
+                write( compacted, entry.getKey(), entry.getValue() );
+            }
+            compacted.close();
+            compacted = null;
+
+            if ( !tempFile.renameTo( file ) )
+            {
+                file.delete();
+                if ( !tempFile.renameTo( file ) )
+                {
+                    tempFile.delete();
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Could not compact the deployment ledger " + file + ": " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( compacted );
+        }
+    }
+
+    private static class Record
+    {
+        private final long size;
+
+        private final String sha1;
+
+        private Record( long size, String sha1 )
+        {
+            this.size = size;
+            this.sha1 = sha1;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.deployer.ArtifactDeploymentException;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.artifact.repository.metadata.Versioning;
+import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Reader;
+import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Writer;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.artifact.ProjectArtifactMetadata;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Deploys release artifacts into a <code>file:</code> repository without going through the wagon transfer: the file
+ * is copied with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, its checksums come
+ * from {@link ChecksumUtils} and the <code>maven-metadata.xml</code> of the artifact is merged the way the Maven
+ * deployer does it. Every file is written to a temporary file in the target directory first and renamed into place,
+ * so readers of the repository never see a partial file.
+ * <p/>
+ * Snapshots, which need timestamped versions and snapshot metadata, and artifacts carrying metadata other than their
+ * pom are left to the regular deployer.
+ * <p/>
+ * With an {@link UploadThrottle}, the artifact and pom files are copied in chunks at the throttled rate.
+ *
+ * @version $Id$
+ */
+class FileRepositoryDeployer
+{
+    /**
+     * Serializes the metadata updates of the deploy threads, per metadata file.
+     */
+    private static final Map<String, Object> METADATA_LOCKS = new HashMap<String, Object>();
+
+    /**
+     * The size of the chunks copied between two requests to the upload throttle.
+     */
+    private static final long THROTTLED_CHUNK_SIZE = 64 * 1024;
+
+    private final Collection<String> algorithms;
+
+    private final UploadThrottle throttle;
+
+    private final Log log;
+
+    /**
+     * @param algorithms the checksum algorithms to write besides MD5 and SHA-1
+     * @param throttle limits the copy rate, may be <code>null</code>
+     * @param log where to report what is copied
+     */
+    FileRepositoryDeployer( Collection<String> algorithms, UploadThrottle throttle, Log log )
+    {
+        this.algorithms = algorithms;
+        this.throttle = throttle;
+        this.log = log;
+    }
+
+    /**
+     * @return <code>true</code> if the artifact can be deployed to the repository by this deployer
+     */
+    static boolean supports( Artifact artifact, ArtifactRepository repository )
+    {
+        if ( !"file".equals( repository.getProtocol() ) || repository.getBasedir() == null || artifact.isSnapshot() )
+        {
+            return false;
+        }
+        for ( Object metadata : artifact.getMetadataList() )
+        {
+            if ( !( metadata instanceof ProjectArtifactMetadata ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void deploy( File source, Artifact artifact, ArtifactRepository repository )
+        throws ArtifactDeploymentException
+    {
+        File basedir = new File( repository.getBasedir() );
+        try
+        {
+            copy( source, new File( basedir, repository.pathOf( artifact ) ) );
+            for ( Object metadata : artifact.getMetadataList() )
+            {
+                ProjectArtifactMetadata pom = (ProjectArtifactMetadata) metadata;
+                copy( pom.getFile(), new File( basedir, repository.pathOfRemoteRepositoryMetadata( pom ) ) );
+            }
+
+            File metadataFile = new File( basedir, artifact.getGroupId().replace( '.', '/' ) + '/'
+                + artifact.getArtifactId() + "/maven-metadata.xml" );
+            updateMetadata( metadataFile, artifact );
+        }
+        catch ( IOException e )
+        {
+            throw new ArtifactDeploymentException( "Error deploying " + artifact.getId() + " to "
+                + repository.getUrl() + ": " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Copies a file into the repository, with its checksums.
+     */
+    private void copy( File source, File target )
+        throws IOException
+    {
+        log.debug( "Copying " + source + " to " + target );
+
+        File directory = target.getParentFile();
+        directory.mkdirs();
+
+        File tempFile = File.createTempFile( target.getName(), ".tmp", directory );
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try
+        {
+            in = new FileInputStream( source );
+            out = new FileOutputStream( tempFile );
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long size = inChannel.size();
+            if ( throttle != null )
+            {
+                acquire( 0, true );
+            }
+            for ( long position = 0; position < size; )
+            {
+                long count = size - position;
+                if ( throttle != null )
+                {
+                    count = Math.min( count, THROTTLED_CHUNK_SIZE );
+                    acquire( count, false );
+                }
+                position += inChannel.transferTo( position, count, outChannel );
+            }
+            out.close();
+            out = null;
+            rename( tempFile, target );
+        }
+        finally
+        {
+            IOUtil.close( in );
+            IOUtil.close( out );
+            tempFile.delete();
+        }
+
+        writeChecksums( ChecksumUtils.digests( source, algorithms ), target );
+    }
+
+    private void acquire( long bytes, boolean request )
+        throws IOException
+    {
+        try
+        {
+            if ( request )
+            {
+                throttle.acquireRequest();
+            }
+            throttle.acquireBytes( bytes );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for the upload throttle" );
+        }
+    }
+
+    private static void writeChecksums( Map<String, String> digests, File target )
+        throws IOException
+    {
+        for ( Map.Entry<String, String> digest : digests.entrySet() )
+        {
+            writeAtomically( new File( target.getPath() + '.' + ChecksumUtils.extension( digest.getKey() ) ),
+                             digest.getValue().getBytes( "US-ASCII" ) );
+        }
+    }
+
+    /**
+     * Adds the version of the artifact to the versions of its <code>maven-metadata.xml</code>, and makes it the
+     * latest and release version.
+     */
+    private void updateMetadata( File metadataFile, Artifact artifact )
+        throws IOException
+    {
+        synchronized ( getLock( metadataFile ) )
+        {
+            Metadata metadata = null;
+            if ( metadataFile.isFile() )
+            {
+                Reader reader = ReaderFactory.newXmlReader( metadataFile );
+                try
+                {
+                    metadata = new MetadataXpp3Reader().read( reader, false );
+                }
+                catch ( XmlPullParserException e )
+                {
+                    log.warn( "Replacing invalid metadata " + metadataFile + ": " + e.getMessage() );
+                }
+                finally
+                {
+                    IOUtil.close( reader );
+                }
+            }
+            if ( metadata == null )
+            {
+                metadata = new Metadata();
+            }
+
+            metadata.setGroupId( artifact.getGroupId() );
+            metadata.setArtifactId( artifact.getArtifactId() );
+            Versioning versioning = metadata.getVersioning();
+            if ( versioning == null )
+            {
+                versioning = new Versioning();
+                metadata.setVersioning( versioning );
+            }
+            if ( !versioning.getVersions().contains( artifact.getBaseVersion() ) )
+            {
+                versioning.addVersion( artifact.getBaseVersion() );
+            }
+            versioning.setLatest( artifact.getBaseVersion() );
+            versioning.setRelease( artifact.getBaseVersion() );
+            versioning.updateTimestamp();
+
+            // the checksums are computed from the bytes, the file is rewritten too often to trust its timestamp
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter( content, "UTF-8" );
+            new MetadataXpp3Writer().write( writer, metadata );
+            writer.close();
+
+            writeAtomically( metadataFile, content.toByteArray() );
+            writeChecksums( ChecksumUtils.digests( content.toByteArray(), algorithms ), metadataFile );
+        }
+    }
+
+    private static void writeAtomically( File target, byte[] content )
+        throws IOException
+    {
+        File tempFile = File.createTempFile( target.getName(), ".tmp", target.getParentFile() );
+        OutputStream out = new FileOutputStream( tempFile );
+        try
+        {
+            out.write( content );
+            out.close();
+            out = null;
+            rename( tempFile, target );
+        }
+        finally
+        {
+            IOUtil.close( out );
+            tempFile.delete();
+        }
+    }
+
+    private static void rename( File source, File target )
+        throws IOException
+    {
+        if ( !source.renameTo( target ) )
+        {
+            // renaming over an existing file fails on some platforms
+            target.delete();
+            if ( !source.renameTo( target ) )
+            {
+                throw new IOException( "Cannot move " + source + " to " + target );
+            }
+        }
+    }
+
+    private static Object getLock( File file )
+    {
+        synchronized ( METADATA_LOCKS )
+        {
+            String key = file.getAbsolutePath();
+            Object lock = METADATA_LOCKS.get( key );
+            if ( lock == null )
+            {
+                lock = new Object();
+                METADATA_LOCKS.put( key, lock );
+            }
+            return lock;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.io.DefaultModelReader;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Stores filtered POMs under the hash of everything the filtering depends on: the source POM, every POM in its
+ * parent chain, the BOMs it imports and a description of the build environment. A POM whose parents or imports
+ * cannot be found in the local repository, or that has a profile activated by a file anywhere in that chain, gets no
+ * key and is filtered as usual. The least recently used POMs are removed once the cache holds more than its maximum
+ * size; a POM taken from the cache is handed out as a copy, so removing it does not affect a deployment still holding
+ * it.
+ *
+ * @version $Id$
+ */
+class FilteredPomCache
+{
+    /**
+     * Bump when the filtering itself changes, so older cached results are not used any more.
+     */
+    private static final String FILTER_VERSION = "2";
+
+    private final File directory;
+
+    private final ArtifactRepository localRepository;
+
+    private final int maxEntries;
+
+    private final Log log;
+
+    /**
+     * @param directory the directory holding the filtered POMs, created when needed
+     * @param localRepository where to look for parents and imported POMs
+     * @param maxEntries the number of filtered POMs to keep
+     * @param log where to report problems with the cache
+     */
+    FilteredPomCache( File directory, ArtifactRepository localRepository, int maxEntries, Log log )
+    {
+        this.directory = directory;
+        this.localRepository = localRepository;
+        this.maxEntries = maxEntries;
+        this.log = log;
+    }
+
+    /**
+     * @param pomFile the POM that is about to be filtered
+     * @param environment anything else the filtered result depends on, like the active profiles
+     * @return the cache key of the POM, or <code>null</code> if it cannot be cached
+     */
+    String key( File pomFile, String environment )
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            digest.update( ( FILTER_VERSION + '\n' + environment + '\n' ).getBytes( "UTF-8" ) );
+            if ( !digestPom( pomFile, digest, new HashSet<String>() ) )
+            {
+                return null;
+            }
+            return ChecksumUtils.toHex( digest.digest() );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Not caching the filtered version of " + pomFile + ": " + e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * @return a copy of the cached filtered POM for the key, or <code>null</code>
+     */
+    File get( String key )
+    {
+        File file = new File( directory, key + ".pom" );
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+        try
+        {
+            File copy = File.createTempFile( "deploy-plugin", "pom" );
+            FileUtils.copyFile( file, copy );
+            // the modification time orders the entries from the least to the most recently used
+            file.setLastModified( System.currentTimeMillis() );
+            return copy;
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Cannot read cached filtered pom " + file + ": " + e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * Stores a filtered POM under a key.
+     */
+    void put( String key, File filteredPom )
+    {
+        try
+        {
+            directory.mkdirs();
+            File tempFile = File.createTempFile( key, ".tmp", directory );
+            FileUtils.copyFile( filteredPom, tempFile );
+            // the copy keeps the modification time of the filtered POM, it is the most recently used entry now
+            tempFile.setLastModified( System.currentTimeMillis() );
+            if ( !tempFile.renameTo( new File( directory, key + ".pom" ) ) )
+            {
+                // most likely another build stored the same result meanwhile
+                tempFile.delete();
+            }
+            evict();
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Could not cache filtered pom " + filteredPom + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Removes the least recently used filtered POMs beyond the maximum size.
+     */
+    private void evict()
+    {
+        File[] files = directory.listFiles( new FileFilter()
+        {
+            public boolean accept( File file )
+            {
+                return file.getName().endsWith( ".pom" );
+            }
+        } );
+        if ( files == null || files.length <= maxEntries )
+        {
+            return;
+        }
+
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for ( int i = 0; i < files.length; i++ )
+        {
+            lastModified[i] = files[i].lastModified();
+            order[i] = Integer.valueOf( i );
+        }
+        Arrays.sort( order, new Comparator<Integer>()
+        {
+            public int compare( Integer a, Integer b )
+            {
+                long difference = lastModified[a.intValue()] - lastModified[b.intValue()];
+                return difference < 0 ? -1 : ( difference > 0 ? 1 : 0 );
+            }
+        } );
+        for ( int i = 0; i < files.length - maxEntries; i++ )
+        {
+            files[order[i].intValue()].delete();
+        }
+    }
+
+    /**
+     * Adds a POM, its parents and its imports to the digest.
+     *
+     * @return <code>false</code> if some POM the result depends on cannot be found or activates a profile by a file
+     */
+    private boolean digestPom( File pomFile, MessageDigest digest, Set<String> visited )
+        throws IOException
+    {
+        if ( pomFile == null || !pomFile.isFile() || !visited.add( pomFile.getCanonicalPath() ) )
+        {
+            return pomFile != null && pomFile.isFile();
+        }
+
+        digest.update( ChecksumUtils.sha1( pomFile ).getBytes( "UTF-8" ) );
+
+        Model model = new DefaultModelReader().read( pomFile, null );
+
+        for ( Profile profile : model.getProfiles() )
+        {
+            // whether the file exists is only known when the pom is built, and may change at any time
+            if ( profile.getActivation() != null && profile.getActivation().getFile() != null )
+            {
+                log.debug( "Not caching the filtered version of a pom depending on " + pomFile + ", its profile "
+                    + profile.getId() + " is activated by a file" );
+                return false;
+            }
+        }
+
+        Parent parent = model.getParent();
+        if ( parent != null && !digestPom( findParent( pomFile, parent ), digest, visited ) )
+        {
+            return false;
+        }
+
+        if ( model.getDependencyManagement() != null )
+        {
+            for ( Dependency dependency : model.getDependencyManagement().getDependencies() )
+            {
+                if ( "import".equals( dependency.getScope() ) && "pom".equals( dependency.getType() )
+                    && !digestPom( findInLocalRepository( dependency.getGroupId(), dependency.getArtifactId(),
+                                                          dependency.getVersion() ), digest, visited ) )
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private File findParent( File pomFile, Parent parent )
+    {
+        String relativePath = parent.getRelativePath();
+        if ( relativePath != null && relativePath.length() > 0 )
+        {
+            File candidate = new File( pomFile.getParentFile(), relativePath );
+            if ( candidate.isDirectory() )
+            {
+                candidate = new File( candidate, "pom.xml" );
+            }
+            if ( candidate.isFile() && isPomOf( candidate, parent ) )
+            {
+                return candidate;
+            }
+        }
+        return findInLocalRepository( parent.getGroupId(), parent.getArtifactId(), parent.getVersion() );
+    }
+
+    private boolean isPomOf( File candidate, Parent parent )
+    {
+        Model model;
+        try
+        {
+            model = new DefaultModelReader().read( candidate, null );
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+        String groupId = model.getGroupId();
+        String version = model.getVersion();
+        if ( model.getParent() != null )
+        {
+            groupId = groupId == null ? model.getParent().getGroupId() : groupId;
+            version = version == null ? model.getParent().getVersion() : version;
+        }
+        return parent.getArtifactId().equals( model.getArtifactId() ) && parent.getGroupId().equals( groupId )
+            && parent.getVersion().equals( version );
+    }
+
+    private File findInLocalRepository( String groupId, String artifactId, String version )
+    {
+        if ( groupId == null || artifactId == null || version == null || version.indexOf( "${" ) >= 0
+            || version.startsWith( "[" ) || version.startsWith( "(" ) )
+        {
+            return null;
+        }
+
+        Artifact pom = new DefaultArtifact( groupId, artifactId, version, "", "pom", "",
+                                            new DeployMojo.PomArtifactHandler() );
+        return new File( localRepository.getBasedir(), localRepository.pathOf( pom ) );
+    }
+}
@@ -7,14 +7,28 @@ import org.apache.maven.artifact.versioning.VersionRange;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Find an artifact in a repo and deploys it
@@ -55,6 +69,30 @@ public class FindAndDeployMojo extends DeployMojo {
      */
     private String id = "";
 
+    /**
+     * A file listing the artifacts to find and deploy, one per line in the syntax of the id parameter. Empty lines
+     * and lines starting with # are ignored. The artifacts are resolved on resolveThreads threads and every one of
+     * them is uploaded as soon as it is resolved.
+     *
+     * @parameter expression="${idsFile}"
+     */
+    private File idsFile;
+
+    /**
+     * Set this to 'true' to deploy the runtime dependencies of the artifacts listed in idsFile too. Artifacts shared
+     * by several of them are deployed once.
+     *
+     * @parameter expression="${transitive}" default-value="false"
+     */
+    private boolean transitive;
+
+    /**
+     * Number of artifacts listed in idsFile that are resolved at the same time.
+     *
+     * @parameter expression="${resolveThreads}" default-value="4"
+     */
+    private int resolveThreads;
+
     /**
      * artifact handling
      *
@@ -63,12 +101,14 @@ public class FindAndDeployMojo extends DeployMojo {
     protected ArtifactHandler handler;
 
     public void execute() throws MojoExecutionException, MojoFailureException {
+        if (idsFile != null) {
+            executeBatch();
+            return;
+        }
         try {
             fillInBlanks();
 
-            VersionRange vrange = VersionRange.createFromVersionSpec(version);
-            Artifact target = new DefaultArtifact(groupId, artifactId, vrange, Artifact.SCOPE_RUNTIME,
-                    type, classifier, handler);
+            Artifact target = createTarget(groupId, artifactId, version, type, classifier);
 
             project.setDependencyArtifacts(Collections.singleton(target));
 
@@ -84,19 +124,214 @@ public class FindAndDeployMojo extends DeployMojo {
         }
     }
 
+    private Artifact createTarget(String groupId, String artifactId, String version, String type, String classifier)
+            throws InvalidVersionSpecificationException {
+        VersionRange vrange = VersionRange.createFromVersionSpec(version);
+        return new DefaultArtifact(groupId, artifactId, vrange, Artifact.SCOPE_RUNTIME, type, classifier, handler);
+    }
+
+    /**
+     * Splits an artifact id string groupId:artifactId:(type):(classifier):version.
+     *
+     * @return the groupId, artifactId, type, classifier and version, the type and classifier are null when missing
+     */
+    private static String[] parseId(String id) {
+        StringTokenizer tokenizer = new StringTokenizer(id, ":");
+        int tokens = tokenizer.countTokens();
+        if (tokens < 3 || tokens > 5) {
+            throw new IllegalArgumentException("Invalid artifact id " + id
+                    + ", expected groupId:artifactId:(type):(classifier):version");
+        }
+        String[] coordinates = new String[5];
+        coordinates[0] = tokenizer.nextToken();
+        coordinates[1] = tokenizer.nextToken();
+        if (tokens > 3) {
+            coordinates[2] = tokenizer.nextToken();
+        }
+        if (tokens == 5) {
+            coordinates[3] = tokenizer.nextToken();
+        }
+        coordinates[4] = tokenizer.nextToken();
+        return coordinates;
+    }
+
+    /**
+     * Finds and deploys all the artifacts listed in idsFile. Every listed artifact is resolved on its own copy of the
+     * project by the resolver threads, while this thread hands the resolved artifacts, without the ones it has seen
+     * already, to the uploads.
+     */
+    private void executeBatch() throws MojoExecutionException, MojoFailureException {
+        List<Artifact> targets = readIds();
+        if (targets.isEmpty()) {
+            getLog().warn("No artifact listed in " + idsFile);
+            return;
+        }
+
+        final BlockingQueue<Set<Artifact>> resolved = new LinkedBlockingQueue<Set<Artifact>>();
+        final DeployExecutor resolver =
+                new DeployExecutor("resolve", resolveThreads, isFailureIsAnOption(), getLog());
+        try {
+            for (final Artifact target : targets) {
+                resolver.submit(target.getId(), new DeployExecutor.Task() {
+                    public void execute() throws MojoExecutionException {
+                        Set<Artifact> artifacts = Collections.emptySet();
+                        try {
+                            artifacts = resolve(target);
+                        } finally {
+                            // an empty set tells the deploying thread that this artifact is done with
+                            resolved.add(artifacts);
+                        }
+                    }
+                });
+            }
+
+            deployIncrementally(new ResolvedArtifacts(resolved, targets.size(), resolver));
+            resolver.await();
+            if (resolver.getSwallowed() > 0) {
+                getLog().warn("Could not resolve " + resolver.getSwallowed() + " of the artifacts listed in " + idsFile);
+            }
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (MojoFailureException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } finally {
+            resolver.shutdown();
+        }
+    }
+
+    private List<Artifact> readIds() throws MojoExecutionException {
+        List<Artifact> targets = new ArrayList<Artifact>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(ReaderFactory.newReader(idsFile, "UTF-8"));
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    String[] coordinates = parseId(line);
+                    targets.add(createTarget(coordinates[0], coordinates[1], coordinates[4],
+                            coordinates[2] != null ? coordinates[2] : "jar", coordinates[3]));
+                } catch (IllegalArgumentException e) {
+                    throw new MojoExecutionException(idsFile + ", line " + lineNumber + ": " + e.getMessage(), e);
+                } catch (InvalidVersionSpecificationException e) {
+                    throw new MojoExecutionException(idsFile + ", line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading " + idsFile + ": " + e.getMessage(), e);
+        } finally {
+            IOUtil.close(reader);
+        }
+        return targets;
+    }
+
+    /**
+     * Resolves one artifact, and its runtime dependencies when transitive, on a copy of the project so several
+     * artifacts can be resolved at the same time.
+     */
+    private Set<Artifact> resolve(Artifact target) throws MojoExecutionException {
+        MavenProject resolution = project.clone();
+        resolution.setDependencyArtifacts(Collections.singleton(target));
+
+        Set<String> scopes = Collections.singleton(Artifact.SCOPE_RUNTIME);
+        try {
+            lcdResolver.resolveProjectDependencies(resolution, scopes, scopes, session, false,
+                    Collections.<Artifact>emptySet());
+        } catch (Exception e) {
+            throw new MojoExecutionException("Error resolving " + target.getId() + ": " + e.getMessage(), e);
+        }
+
+        Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+        artifacts.add(target);
+        if (transitive) {
+            artifacts.addAll(resolution.getArtifacts());
+        }
+        getLog().debug("Resolved " + target.getId() + (transitive ? " with " + (artifacts.size() - 1)
+                + " dependencies" : ""));
+        return artifacts;
+    }
+
+    /**
+     * The artifacts resolved so far, minus the ones already handed out. Blocks until the next artifacts are resolved,
+     * and ends once every listed artifact is resolved or the resolution failed.
+     */
+    private static class ResolvedArtifacts implements Iterator<Set<Artifact>> {
+
+        private final BlockingQueue<Set<Artifact>> resolved;
+
+        private final DeployExecutor resolver;
+
+        private int remaining;
+
+        private final Set<String> seen = new HashSet<String>();
+
+        private Set<Artifact> next;
+
+        ResolvedArtifacts(BlockingQueue<Set<Artifact>> resolved, int expected, DeployExecutor resolver) {
+            this.resolved = resolved;
+            this.remaining = expected;
+            this.resolver = resolver;
+        }
+
+        public boolean hasNext() {
+            while (next == null && remaining > 0 && !resolver.isFailed()) {
+                Set<Artifact> artifacts;
+                try {
+                    artifacts = resolved.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                if (artifacts == null) {
+                    continue;
+                }
+                remaining--;
+
+                Set<Artifact> unseen = new LinkedHashSet<Artifact>();
+                for (Artifact artifact : artifacts) {
+                    if (seen.add(artifact.getId())) {
+                        unseen.add(artifact);
+                    }
+                }
+                if (!unseen.isEmpty()) {
+                    next = unseen;
+                }
+            }
+            return next != null;
+        }
+
+        public Set<Artifact> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Set<Artifact> artifacts = next;
+            next = null;
+            return artifacts;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     private void fillInBlanks() throws IOException {
         if (id != null && !id.isEmpty()) {
-            StringTokenizer tokenizer = new StringTokenizer(id, ":");
-            int tokens = tokenizer.countTokens();
-            groupId = tokenizer.nextToken();
-            artifactId = tokenizer.nextToken();
-            if (tokens > 3) {
-                type = tokenizer.nextToken();
+            String[] coordinates = parseId(id);
+            groupId = coordinates[0];
+            artifactId = coordinates[1];
+            if (coordinates[2] != null) {
+                type = coordinates[2];
             }
-            if (tokens == 5) {
-                classifier = tokenizer.nextToken();
+            if (coordinates[3] != null) {
+                classifier = coordinates[3];
             }
-            version = tokenizer.nextToken();
+            version = coordinates[4];
         } else if (version == null || artifactId == null || groupId == null) {
             BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
 
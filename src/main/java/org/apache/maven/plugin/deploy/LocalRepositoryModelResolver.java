@@ -0,0 +1,93 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.io.File;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelSource;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+
+/**
+ * Resolves parent POMs and imported BOMs from the local repository only. Resolving the dependencies of a project
+ * already downloads the parents of their POMs, so when filtering those POMs a missing parent is rare, and the
+ * caller falls back to building the project the regular way.
+ *
+ * @version $Id$
+ */
+class LocalRepositoryModelResolver
+    implements ModelResolver
+{
+    private final ArtifactRepository localRepository;
+
+    LocalRepositoryModelResolver( ArtifactRepository localRepository )
+    {
+        this.localRepository = localRepository;
+    }
+
+    public ModelSource resolveModel( String groupId, String artifactId, String version )
+        throws UnresolvableModelException
+    {
+        Artifact pom = new DefaultArtifact( groupId, artifactId, version, "", "pom", "",
+                                            new DeployMojo.PomArtifactHandler() );
+        File pomFile = new File( localRepository.getBasedir(), localRepository.pathOf( pom ) );
+        if ( !pomFile.isFile() )
+        {
+            throw new UnresolvableModelException( "POM not found in the local repository: " + pomFile, groupId,
+                                                  artifactId, version );
+        }
+        return new FileModelSource( pomFile );
+    }
+
+    // the following methods are only called by newer Maven versions
+
+    public ModelSource resolveModel( Parent parent )
+        throws UnresolvableModelException
+    {
+        return resolveModel( parent.getGroupId(), parent.getArtifactId(), parent.getVersion() );
+    }
+
+    public ModelSource resolveModel( Dependency dependency )
+        throws UnresolvableModelException
+    {
+        return resolveModel( dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion() );
+    }
+
+    public void addRepository( Repository repository )
+    {
+        // only the local repository is used
+    }
+
+    public void addRepository( Repository repository, boolean replace )
+    {
+        // only the local repository is used
+    }
+
+    public ModelResolver newCopy()
+    {
+        return this;
+    }
+}
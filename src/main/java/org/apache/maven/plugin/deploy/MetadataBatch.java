@@ -0,0 +1,220 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.deployer.ArtifactDeploymentException;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.metadata.ArtifactRepositoryMetadata;
+import org.apache.maven.artifact.repository.metadata.SnapshotArtifactRepositoryMetadata;
+import org.apache.maven.project.artifact.ProjectArtifactMetadata;
+import org.sonatype.aether.RepositorySystem;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.deployment.DeployRequest;
+import org.sonatype.aether.deployment.DeploymentException;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.util.artifact.SubArtifact;
+
+/**
+ * Collects artifacts by repository, groupId, artifactId and version, and deploys every group with a single request
+ * to the repository system. The repository system generates the <code>maven-metadata.xml</code> files of a request
+ * once for all its artifacts: the groupId:artifactId metadata is downloaded, merged and uploaded once, and the
+ * snapshots of a version all get the same timestamp and build number in a single version metadata. The Maven 2
+ * style deployer does all of that again for every artifact.
+ *
+ * @version $Id$
+ */
+class MetadataBatch
+{
+    /**
+     * An artifact waiting to be deployed.
+     */
+    static class Item
+    {
+        final File source;
+
+        final Artifact artifact;
+
+        final ArtifactRepository repository;
+
+        Item( File source, Artifact artifact, ArtifactRepository repository )
+        {
+            this.source = source;
+            this.artifact = artifact;
+            this.repository = repository;
+        }
+    }
+
+    private final Map<String, List<Item>> groups = new LinkedHashMap<String, List<Item>>();
+
+    /**
+     * Adds an artifact to the group of its version.
+     */
+    synchronized void add( File source, Artifact artifact, ArtifactRepository repository )
+    {
+        String key = repository.getId() + '@' + repository.getUrl() + ' ' + artifact.getGroupId() + ':'
+            + artifact.getArtifactId() + ':' + artifact.getBaseVersion();
+        List<Item> group = groups.get( key );
+        if ( group == null )
+        {
+            group = new ArrayList<Item>();
+            groups.put( key, group );
+        }
+        group.add( new Item( source, artifact, repository ) );
+    }
+
+    /**
+     * @return the groups in the order their first artifact was added, the artifacts of a group in the order they
+     *         were added
+     */
+    synchronized List<List<Item>> getGroups()
+    {
+        return new ArrayList<List<Item>>( groups.values() );
+    }
+
+    /**
+     * @return <code>true</code> if all the metadata of the artifact is known to the repository system: its pom, and
+     *         the repository metadata the repository system generates itself
+     */
+    static boolean supports( Artifact artifact )
+    {
+        for ( Object metadata : artifact.getMetadataList() )
+        {
+            if ( !( metadata instanceof ProjectArtifactMetadata || metadata instanceof ArtifactRepositoryMetadata
+                || metadata instanceof SnapshotArtifactRepositoryMetadata ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String describe( List<Item> group )
+    {
+        Artifact first = group.get( 0 ).artifact;
+        return first.getGroupId() + ':' + first.getArtifactId() + ':' + first.getBaseVersion() + " (" + group.size()
+            + ( group.size() == 1 ? " artifact)" : " artifacts)" );
+    }
+
+    /**
+     * Deploys artifacts of the same version, with their poms, in one request.
+     */
+    static void deploy( RepositorySystem repositorySystem, RepositorySystemSession session, List<Item> group )
+        throws ArtifactDeploymentException
+    {
+        DeployRequest request = new DeployRequest();
+        for ( org.sonatype.aether.artifact.Artifact artifact : toArtifacts( group ) )
+        {
+            request.addArtifact( artifact );
+        }
+
+        ArtifactRepository deploymentRepository = group.get( 0 ).repository;
+        RemoteRepository repository = RepositoryUtils.toRepo( deploymentRepository );
+        // the same lookups the Maven deployer does for repositories created by the plugin
+        if ( deploymentRepository.getAuthentication() == null )
+        {
+            repository.setAuthentication( session.getAuthenticationSelector().getAuthentication( repository ) );
+        }
+        if ( deploymentRepository.getProxy() == null )
+        {
+            repository.setProxy( session.getProxySelector().getProxy( repository ) );
+        }
+        request.setRepository( repository );
+
+        try
+        {
+            repositorySystem.deploy( session, request );
+        }
+        catch ( DeploymentException e )
+        {
+            throw new ArtifactDeploymentException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Lists the files of a group once per classifier and extension. A pom artifact of the group, like a filtered pom,
+     * replaces the pom the artifacts carry as their metadata.
+     *
+     * @return the artifacts to deploy, with their files
+     * @throws ArtifactDeploymentException if two different files would be deployed as the same artifact
+     */
+    static List<org.sonatype.aether.artifact.Artifact> toArtifacts( List<Item> group )
+        throws ArtifactDeploymentException
+    {
+        Map<String, org.sonatype.aether.artifact.Artifact> artifacts =
+            new LinkedHashMap<String, org.sonatype.aether.artifact.Artifact>();
+        Map<String, org.sonatype.aether.artifact.Artifact> metadataPoms =
+            new LinkedHashMap<String, org.sonatype.aether.artifact.Artifact>();
+        for ( Item item : group )
+        {
+            org.sonatype.aether.artifact.Artifact artifact = RepositoryUtils.toArtifact( item.artifact );
+            artifact = artifact.setFile( item.source );
+            add( artifacts, artifact );
+
+            for ( Object metadata : item.artifact.getMetadataList() )
+            {
+                // the repository metadata is generated by the repository system
+                if ( metadata instanceof ProjectArtifactMetadata )
+                {
+                    org.sonatype.aether.artifact.Artifact pom = new SubArtifact( artifact, "", "pom" );
+                    add( metadataPoms, pom.setFile( ( (ProjectArtifactMetadata) metadata ).getFile() ) );
+                }
+            }
+        }
+
+        for ( Map.Entry<String, org.sonatype.aether.artifact.Artifact> pom : metadataPoms.entrySet() )
+        {
+            if ( !artifacts.containsKey( pom.getKey() ) )
+            {
+                artifacts.put( pom.getKey(), pom.getValue() );
+            }
+        }
+        return new ArrayList<org.sonatype.aether.artifact.Artifact>( artifacts.values() );
+    }
+
+    private static void add( Map<String, org.sonatype.aether.artifact.Artifact> artifacts,
+                             org.sonatype.aether.artifact.Artifact artifact )
+        throws ArtifactDeploymentException
+    {
+        String key = artifact.getClassifier() + ':' + artifact.getExtension();
+        org.sonatype.aether.artifact.Artifact other = artifacts.get( key );
+        if ( other == null )
+        {
+            artifacts.put( key, artifact );
+        }
+        else if ( !sameFile( other.getFile(), artifact.getFile() ) )
+        {
+            throw new ArtifactDeploymentException( "Cannot deploy both " + other.getFile() + " and "
+                + artifact.getFile() + " as " + artifact );
+        }
+    }
+
+    private static boolean sameFile( File file, File other )
+    {
+        return file == null ? other == null : other != null && file.getAbsoluteFile().equals( other.getAbsoluteFile() );
+    }
+}
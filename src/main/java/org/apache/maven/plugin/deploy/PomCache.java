@@ -0,0 +1,224 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Remembers across builds where the POM of a groupId:artifactId:version was resolved to, so the resolver does not
+ * have to be asked again. Every entry records the size and SHA-1 of the POM and is only trusted while the file on
+ * disk still matches. The least recently used entries are evicted once the cache holds more than its maximum size.
+ *
+ * @version $Id$
+ */
+class PomCache
+{
+    private static final String INDEX_FILE = "pom-cache.index";
+
+    private final File indexFile;
+
+    private final Log log;
+
+    private final Map<String, CachedPom> entries;
+
+    private boolean dirty;
+
+    /**
+     * @param directory the directory holding the cache index, created when needed
+     * @param maxEntries the number of POMs to remember
+     * @param log where to report problems with the cache
+     */
+    PomCache( File directory, final int maxEntries, Log log )
+    {
+        this.indexFile = new File( directory, INDEX_FILE );
+        this.log = log;
+        this.entries = new LinkedHashMap<String, CachedPom>( 16, 0.75f, true )
+        {
+            protected boolean removeEldestEntry( Map.Entry<String, CachedPom> eldest )
+            {
+                return size() > maxEntries;
+            }
+        };
+        load();
+    }
+
+    /**
+     * @param gav the groupId:artifactId:version of the POM
+     * @return the cached POM file, or <code>null</code> if it is unknown or changed since it was cached
+     */
+    synchronized File get( String gav )
+    {
+        CachedPom entry = entries.get( gav );
+        if ( entry == null )
+        {
+            return null;
+        }
+
+        File file = new File( entry.path );
+        try
+        {
+            if ( file.length() == entry.size && entry.sha1.equals( ChecksumUtils.sha1( file ) ) )
+            {
+                return file;
+            }
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Cannot read cached pom " + file + ": " + e.getMessage() );
+        }
+
+        log.debug( "Dropping stale pom cache entry for " + gav );
+        entries.remove( gav );
+        dirty = true;
+        return null;
+    }
+
+    /**
+     * Records the resolved POM of a coordinate.
+     *
+     * @param gav the groupId:artifactId:version of the POM
+     * @param file the resolved POM file
+     */
+    synchronized void put( String gav, File file )
+    {
+        try
+        {
+            entries.put( gav, new CachedPom( file.getAbsolutePath(), file.length(), ChecksumUtils.sha1( file ) ) );
+            dirty = true;
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Not caching pom " + file + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Writes the index back to disk if it changed, least recently used entries first.
+     */
+    synchronized void save()
+    {
+        if ( !dirty )
+        {
+            return;
+        }
+
+        File directory = indexFile.getParentFile();
+        directory.mkdirs();
+
+        Writer writer = null;
+        try
+        {
+            File tempFile = File.createTempFile( INDEX_FILE, ".tmp", directory );
+            writer = new OutputStreamWriter( new FileOutputStream( tempFile ), "UTF-8" );
+            for ( Map.Entry<String, CachedPom> entry : entries.entrySet() )
+            {
+                CachedPom value = entry.getValue();
+                writer.write( entry.getKey() + '\t' + value.size + '\t' + value.sha1 + '\t' + value.path + '\n' );
+            }
+            writer.close();
+            writer = null;
+
+            if ( !tempFile.renameTo( indexFile ) )
+            {
+                indexFile.delete();
+                if ( !tempFile.renameTo( indexFile ) )
+                {
+                    tempFile.delete();
+                    throw new IOException( "Cannot rename " + tempFile + " to " + indexFile );
+                }
+            }
+            dirty = false;
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not save the pom cache: " + e.getMessage() );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+    }
+
+    private void load()
+    {
+        if ( !indexFile.isFile() )
+        {
+            return;
+        }
+
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new InputStreamReader( new FileInputStream( indexFile ), "UTF-8" ) );
+            for ( String line = reader.readLine(); line != null; line = reader.readLine() )
+            {
+                String[] fields = line.split( "\t", 4 );
+                if ( fields.length == 4 )
+                {
+                    try
+                    {
+                        entries.put( fields[0], new CachedPom( fields[3], Long.parseLong( fields[1] ), fields[2] ) );
+                    }
+                    catch ( NumberFormatException e )
+                    {
+                        dirty = true;
+                    }
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not read the pom cache, starting with an empty one: " + e.getMessage() );
+            entries.clear();
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    private static class CachedPom
+    {
+        private final String path;
+
+        private final long size;
+
+        private final String sha1;
+
+        private CachedPom( String path, long size, String sha1 )
+        {
+            this.path = path;
+            this.size = size;
+            this.sha1 = sha1;
+        }
+    }
+}
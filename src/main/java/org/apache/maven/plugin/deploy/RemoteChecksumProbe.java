@@ -0,0 +1,185 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.repository.legacy.WagonManager;
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Checks whether a release artifact is already present in the deployment repository by downloading its remote
+ * <code>.sha1</code> file and comparing it with the local file. Probes can be started ahead of the upload with
+ * {@link #prefetch(File, Artifact, ArtifactRepository)} so their round trips overlap with other work.
+ * <p/>
+ * A probe that cannot be completed, because the checksum is missing or the repository does not allow reading it,
+ * reports the artifact as not deployed so it is uploaded as usual.
+ *
+ * @version $Id$
+ */
+class RemoteChecksumProbe
+{
+    private final WagonManager wagonManager;
+
+    private final Log log;
+
+    private final ExecutorService pool;
+
+    private final ConcurrentMap<String, Future<Boolean>> probes = new ConcurrentHashMap<String, Future<Boolean>>();
+
+    RemoteChecksumProbe( WagonManager wagonManager, int threads, Log log )
+    {
+        this.wagonManager = wagonManager;
+        this.log = log;
+        this.pool = Executors.newFixedThreadPool( Math.max( 1, threads ), new DeployThreadFactory( "checksum-probe" ) );
+    }
+
+    /**
+     * Starts probing the repository for an artifact in the background.
+     */
+    void prefetch( File file, Artifact artifact, ArtifactRepository repository )
+    {
+        if ( file != null && !artifact.isSnapshot() )
+        {
+            probe( file, artifact, repository, true );
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the repository holds a release artifact with the same SHA-1 as the local file
+     */
+    boolean isDeployed( File file, Artifact artifact, ArtifactRepository repository )
+    {
+        if ( file == null || artifact.isSnapshot() )
+        {
+            return false;
+        }
+
+        try
+        {
+            return probe( file, artifact, repository, false ).get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch ( ExecutionException e )
+        {
+            log.debug( "Checksum probe for " + artifact.getId() + " failed", e.getCause() );
+            return false;
+        }
+    }
+
+    void shutdown()
+    {
+        pool.shutdownNow();
+    }
+
+    private Future<Boolean> probe( final File file, final Artifact artifact, final ArtifactRepository repository,
+                                   boolean background )
+    {
+        final String remotePath = repository.pathOf( artifact );
+        String key = repository.getUrl() + '/' + remotePath + '@' + file.getAbsolutePath();
+
+        Future<Boolean> future = probes.get( key );
+        if ( future != null )
+        {
+            return future;
+        }
+
+        FutureTask<Boolean> task = new FutureTask<Boolean>( new Callable<Boolean>()
+        {
+            public Boolean call()
+                throws Exception
+            {
+                return matches( file, artifact, repository, remotePath );
+            }
+        } );
+
+        future = probes.putIfAbsent( key, task );
+        if ( future != null )
+        {
+            return future;
+        }
+
+        if ( background )
+        {
+            pool.execute( task );
+        }
+        else
+        {
+            task.run();
+        }
+        return task;
+    }
+
+    private boolean matches( File file, Artifact artifact, ArtifactRepository repository, String remotePath )
+        throws IOException
+    {
+        File checksumFile = File.createTempFile( "deploy-plugin", ".sha1" );
+        try
+        {
+            wagonManager.getRemoteFile( repository, checksumFile, remotePath + ".sha1", null,
+                                        ArtifactRepositoryPolicy.CHECKSUM_POLICY_IGNORE, true );
+
+            String remote = FileUtils.fileRead( checksumFile ).trim();
+            int end = remote.indexOf( ' ' );
+            if ( end > 0 )
+            {
+                // some tools append the file name to the checksum
+                remote = remote.substring( 0, end );
+            }
+
+            boolean matches = remote.equalsIgnoreCase( ChecksumUtils.sha1( file ) );
+            log.debug( artifact.getId() + ( matches ? " matches" : " differs from" ) + " the remote checksum" );
+            return matches;
+        }
+        catch ( ResourceDoesNotExistException e )
+        {
+            log.debug( artifact.getId() + " is not deployed yet" );
+            return false;
+        }
+        catch ( TransferFailedException e )
+        {
+            log.debug( "Cannot fetch the remote checksum of " + artifact.getId() + ": " + e.getMessage() );
+            return false;
+        }
+        finally
+        {
+            checksumFile.delete();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Holds objects that live as long as one Maven build and are shared by all mojo executions in it. Parallel builds
+ * hand every project a clone of the session, so the objects are kept per execution request, which the clones share.
+ *
+ * @version $Id$
+ */
+final class SessionScope
+{
+    private static final Map<Object, Map<Class<?>, Object>> SCOPES = new WeakHashMap<Object, Map<Class<?>, Object>>();
+
+    private SessionScope()
+    {
+    }
+
+    /**
+     * Returns the instance of a type for the build of a session, creating it with its no-argument constructor on the
+     * first call.
+     *
+     * @param session the session of the running build
+     * @param type the type of the shared object
+     * @return the shared object, never <code>null</code>
+     */
+    static synchronized <T> T get( MavenSession session, Class<T> type )
+    {
+        Map<Class<?>, Object> scope = SCOPES.get( session.getRequest() );
+        if ( scope == null )
+        {
+            scope = new HashMap<Class<?>, Object>();
+            SCOPES.put( session.getRequest(), scope );
+        }
+
+        Object value = scope.get( type );
+        if ( value == null )
+        {
+            try
+            {
+                value = type.newInstance();
+            }
+            catch ( InstantiationException e )
+            {
+                throw new IllegalStateException( "Cannot create " + type.getName(), e );
+            }
+            catch ( IllegalAccessException e )
+            {
+                throw new IllegalStateException( "Cannot create " + type.getName(), e );
+            }
+            scope.put( type, value );
+        }
+        return type.cast( value );
+    }
+}
@@ -0,0 +1,52 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.model.building.ModelCache;
+
+/**
+ * A model cache shared by all POMs filtered during one build, so parents and imported BOMs that many dependencies
+ * have in common are read and processed only once. The model builder copies the models it takes from and puts into
+ * the cache, so one instance can serve several threads.
+ *
+ * @version $Id$
+ */
+class SharedModelCache
+    implements ModelCache
+{
+    private final ConcurrentMap<String, Object> models = new ConcurrentHashMap<String, Object>();
+
+    public void put( String groupId, String artifactId, String version, String tag, Object data )
+    {
+        models.put( key( groupId, artifactId, version, tag ), data );
+    }
+
+    public Object get( String groupId, String artifactId, String version, String tag )
+    {
+        return models.get( key( groupId, artifactId, version, tag ) );
+    }
+
+    private static String key( String groupId, String artifactId, String version, String tag )
+    {
+        return groupId + ':' + artifactId + ':' + version + ':' + tag;
+    }
+}
@@ -0,0 +1,301 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.MXParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Filters a self-contained POM in a single streaming pass, without building a model: the same top level elements
+ * the regular filter drops are skipped, test scoped dependencies and comments are left out. Only one dependency is
+ * buffered at a time.
+ * <p/>
+ * The effective model of a POM that has a parent, profiles, a dependencyManagement section or property references
+ * differs from the POM itself. When one of those is encountered the filter gives up, so the caller can fall back to
+ * building the project.
+ *
+ * @version $Id$
+ */
+class StreamingPomFilter
+{
+    private static final Set<String> STRIPPED_ELEMENTS = new HashSet<String>( Arrays.asList(
+        "build", "ciManagement", "contributors", "developers", "issueManagement", "mailingLists", "modules",
+        "distributionManagement", "pluginRepositories", "reporting", "reports", "repositories", "scm", "url",
+        "properties" ) );
+
+    private static final Set<String> UNSUPPORTED_ELEMENTS = new HashSet<String>( Arrays.asList(
+        "parent", "profiles", "dependencyManagement" ) );
+
+    /**
+     * Thrown internally when the POM needs the regular filter.
+     */
+    private static class UnsupportedPomException
+        extends Exception
+    {
+        UnsupportedPomException( String message )
+        {
+            super( message );
+        }
+    }
+
+    private String reason;
+
+    /**
+     * Filters a POM.
+     *
+     * @param source the POM to filter
+     * @param target where to write the filtered POM
+     * @return <code>false</code> if the POM needs the regular filter, in which case the target is removed again
+     * @throws IOException if the POM cannot be read or written
+     */
+    boolean filter( File source, File target )
+        throws IOException
+    {
+        Reader reader = null;
+        Writer writer = null;
+        boolean filtered = false;
+        try
+        {
+            reader = ReaderFactory.newXmlReader( source );
+            writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( target ), "UTF-8" ) );
+
+            XmlPullParser parser = new MXParser();
+            parser.setInput( reader );
+
+            writer.write( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" );
+            transform( parser, writer );
+            filtered = true;
+        }
+        catch ( XmlPullParserException e )
+        {
+            throw new IOException( "Error parsing POM " + source + ": " + e.getMessage() );
+        }
+        catch ( UnsupportedPomException e )
+        {
+            reason = e.getMessage();
+        }
+        finally
+        {
+            IOUtil.close( reader );
+            IOUtil.close( writer );
+            if ( !filtered )
+            {
+                target.delete();
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * @return why the last POM could not be filtered, or <code>null</code>
+     */
+    String getReason()
+    {
+        return reason;
+    }
+
+    private void transform( XmlPullParser parser, Writer out )
+        throws XmlPullParserException, IOException, UnsupportedPomException
+    {
+        // whitespace is held back until we know whether the element that follows it is kept
+        String pendingWhitespace = "";
+        StringBuilder dependency = null;
+        String scope = null;
+        boolean inScope = false;
+
+        for ( int event = parser.nextToken(); event != XmlPullParser.END_DOCUMENT; event = parser.nextToken() )
+        {
+            Appendable target = dependency != null ? dependency : out;
+
+            if ( parser.getDepth() == 0 || ( event == XmlPullParser.START_TAG && parser.getDepth() == 1 ) )
+            {
+                // outside the root element every node goes on a line of its own
+                pendingWhitespace = "\n";
+                if ( event == XmlPullParser.TEXT || event == XmlPullParser.IGNORABLE_WHITESPACE )
+                {
+                    continue;
+                }
+            }
+
+            switch ( event )
+            {
+                case XmlPullParser.START_TAG:
+                {
+                    String name = parser.getName();
+                    int depth = parser.getDepth();
+                    if ( depth == 2 && UNSUPPORTED_ELEMENTS.contains( name ) )
+                    {
+                        throw new UnsupportedPomException( "the pom has a " + name + " element" );
+                    }
+                    if ( depth == 2 && STRIPPED_ELEMENTS.contains( name ) )
+                    {
+                        skipElement( parser );
+                        pendingWhitespace = "";
+                        break;
+                    }
+                    if ( depth == 3 && "dependency".equals( name ) )
+                    {
+                        dependency = new StringBuilder();
+                        scope = null;
+                        target = dependency;
+                    }
+                    inScope = depth == 4 && dependency != null && "scope".equals( name );
+
+                    target.append( pendingWhitespace );
+                    pendingWhitespace = "";
+                    target.append( '<' ).append( name );
+                    for ( int i = 0; i < parser.getAttributeCount(); i++ )
+                    {
+                        String value = checkInterpolation( parser.getAttributeValue( i ) );
+                        target.append( ' ' ).append( parser.getAttributeName( i ) ).append( "=\"" );
+                        target.append( escape( value, true ) ).append( '"' );
+                    }
+                    target.append( '>' );
+                    break;
+                }
+                case XmlPullParser.END_TAG:
+                    inScope = false;
+                    target.append( pendingWhitespace );
+                    pendingWhitespace = "";
+                    target.append( "</" ).append( parser.getName() ).append( '>' );
+                    if ( dependency != null && parser.getDepth() == 3 )
+                    {
+                        if ( !Artifact.SCOPE_TEST.equals( scope ) )
+                        {
+                            out.append( dependency );
+                        }
+                        dependency = null;
+                    }
+                    break;
+                case XmlPullParser.TEXT:
+                case XmlPullParser.ENTITY_REF:
+                {
+                    String text = checkInterpolation( parser.getText() );
+                    if ( inScope )
+                    {
+                        scope = scope == null ? text.trim() : ( scope + text ).trim();
+                    }
+                    if ( event == XmlPullParser.TEXT && parser.isWhitespace() && !inScope )
+                    {
+                        pendingWhitespace += text;
+                    }
+                    else
+                    {
+                        target.append( pendingWhitespace ).append( escape( text, false ) );
+                        pendingWhitespace = "";
+                    }
+                    break;
+                }
+                case XmlPullParser.IGNORABLE_WHITESPACE:
+                    pendingWhitespace += parser.getText();
+                    break;
+                case XmlPullParser.CDSECT:
+                    target.append( pendingWhitespace ).append( "<![CDATA[" );
+                    target.append( checkInterpolation( parser.getText() ) ).append( "]]>" );
+                    pendingWhitespace = "";
+                    break;
+                case XmlPullParser.COMMENT:
+                    // comments are not published, like with the model writer; the whitespace after the comment
+                    // takes the place of the whitespace before it
+                    pendingWhitespace = "";
+                    break;
+                case XmlPullParser.PROCESSING_INSTRUCTION:
+                    if ( parser.getText().startsWith( "xml " ) )
+                    {
+                        // the output gets its own declaration, as it is always written in UTF-8
+                        pendingWhitespace = "";
+                        break;
+                    }
+                    target.append( pendingWhitespace ).append( "<?" ).append( parser.getText() ).append( "?>" );
+                    pendingWhitespace = "";
+                    break;
+                case XmlPullParser.DOCDECL:
+                    target.append( "<!DOCTYPE" ).append( parser.getText() ).append( ">" );
+                    break;
+                default:
+                    break;
+            }
+        }
+        out.append( '\n' );
+    }
+
+    private static void skipElement( XmlPullParser parser )
+        throws XmlPullParserException, IOException
+    {
+        int depth = parser.getDepth();
+        int event = parser.nextToken();
+        while ( event != XmlPullParser.END_TAG || parser.getDepth() > depth )
+        {
+            event = parser.nextToken();
+        }
+    }
+
+    private static String checkInterpolation( String text )
+        throws UnsupportedPomException
+    {
+        if ( text != null && text.indexOf( "${" ) >= 0 )
+        {
+            throw new UnsupportedPomException( "the pom refers to properties" );
+        }
+        return text;
+    }
+
+    private static String escape( String text, boolean attribute )
+    {
+        StringBuilder escaped = new StringBuilder( text.length() );
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            char c = text.charAt( i );
+            switch ( c )
+            {
+                case '&':
+                    escaped.append( "&amp;" );
+                    break;
+                case '<':
+                    escaped.append( "&lt;" );
+                    break;
+                case '>':
+                    escaped.append( "&gt;" );
+                    break;
+                case '"':
+                    escaped.append( attribute ? "&quot;" : "\"" );
+                    break;
+                default:
+                    escaped.append( c );
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,257 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.transfer.TransferCancelledException;
+import org.sonatype.aether.transfer.TransferEvent;
+import org.sonatype.aether.transfer.TransferListener;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+
+/**
+ * Limits the upload rate of a whole build with two token buckets, one filled with bytes at the configured bandwidth
+ * and one filled with requests. Uploads take tokens as they send their data and wait while the bucket is empty, so
+ * the uploads of all threads and modules together never go faster than the limits for longer than the burst. The
+ * throttle is shared through the {@link SessionScope}; the first mojo that enables it configures it.
+ *
+ * @version $Id$
+ */
+class UploadThrottle
+{
+    /**
+     * A token bucket. Tokens are added continuously at the rate, up to the capacity.
+     */
+    static class TokenBucket
+    {
+        private final double rate;
+
+        private final double capacity;
+
+        private double tokens;
+
+        private long refilled;
+
+        /**
+         * @param rate the tokens added per second, must be positive
+         * @param capacity the most tokens the bucket holds, which can be taken at once after an idle period
+         */
+        TokenBucket( double rate, double capacity )
+        {
+            this.rate = rate;
+            this.capacity = Math.max( 1, capacity );
+            this.tokens = this.capacity;
+            this.refilled = System.nanoTime();
+        }
+
+        /**
+         * Takes tokens, waiting until the bucket has them. Taking more tokens than the bucket can hold is allowed:
+         * the bucket goes into debt and the following callers wait until it is paid back, so the rate is kept without
+         * splitting large requests. Callers are served in the order they ask.
+         */
+        void acquire( double count )
+            throws InterruptedException
+        {
+            long waitNanos;
+            synchronized ( this )
+            {
+                long now = System.nanoTime();
+                tokens = Math.min( capacity, tokens + ( now - refilled ) * rate / 1000000000L );
+                refilled = now;
+                tokens -= count;
+                waitNanos = tokens < 0 ? (long) ( -tokens * 1000000000L / rate ) : 0;
+            }
+            if ( waitNanos > 0 )
+            {
+                Thread.sleep( waitNanos / 1000000L, (int) ( waitNanos % 1000000L ) );
+            }
+        }
+    }
+
+    private TokenBucket bytes;
+
+    private TokenBucket requests;
+
+    private boolean configured;
+
+    /**
+     * Sets the limits, unless another mojo of the build did already.
+     *
+     * @param bytesPerSecond the upload bandwidth, 0 for no limit
+     * @param burstBytes the bytes that may be sent at full speed after an idle period, 0 for one second of bandwidth
+     * @param requestsPerSecond the transfer requests per second, 0 for no limit
+     */
+    synchronized void configure( long bytesPerSecond, long burstBytes, double requestsPerSecond )
+    {
+        if ( configured )
+        {
+            return;
+        }
+        configured = true;
+        if ( bytesPerSecond > 0 )
+        {
+            bytes = new TokenBucket( bytesPerSecond, burstBytes > 0 ? burstBytes : bytesPerSecond );
+        }
+        if ( requestsPerSecond > 0 )
+        {
+            requests = new TokenBucket( requestsPerSecond, Math.max( 1, requestsPerSecond ) );
+        }
+    }
+
+    /**
+     * Waits until the bytes may be sent.
+     */
+    void acquireBytes( long count )
+        throws InterruptedException
+    {
+        TokenBucket bucket = getBytes();
+        if ( bucket != null && count > 0 )
+        {
+            bucket.acquire( count );
+        }
+    }
+
+    /**
+     * Waits until a request may be sent.
+     */
+    void acquireRequest()
+        throws InterruptedException
+    {
+        TokenBucket bucket = getRequests();
+        if ( bucket != null )
+        {
+            bucket.acquire( 1 );
+        }
+    }
+
+    private synchronized TokenBucket getBytes()
+    {
+        return bytes;
+    }
+
+    private synchronized TokenBucket getRequests()
+    {
+        return requests;
+    }
+
+    /**
+     * Wraps a repository system session, so the transfers it does are throttled. The repository system reports the
+     * progress of an upload from the thread sending the data, holding the reports back paces the upload itself.
+     *
+     * @param session the session to throttle
+     * @return a copy of the session with a throttling transfer listener
+     */
+    RepositorySystemSession throttle( RepositorySystemSession session )
+    {
+        return new DefaultRepositorySystemSession( session ).setTransferListener(
+            new ThrottlingListener( session.getTransferListener() ) );
+    }
+
+    /**
+     * Takes a request token for every transfer and byte tokens for the data of every upload, then passes the events
+     * on to the original listener.
+     */
+    private class ThrottlingListener
+        implements TransferListener
+    {
+        private final TransferListener delegate;
+
+        ThrottlingListener( TransferListener delegate )
+        {
+            this.delegate = delegate;
+        }
+
+        public void transferInitiated( TransferEvent event )
+            throws TransferCancelledException
+        {
+            try
+            {
+                acquireRequest();
+            }
+            catch ( InterruptedException e )
+            {
+                throw cancelled( e );
+            }
+            if ( delegate != null )
+            {
+                delegate.transferInitiated( event );
+            }
+        }
+
+        public void transferStarted( TransferEvent event )
+            throws TransferCancelledException
+        {
+            if ( delegate != null )
+            {
+                delegate.transferStarted( event );
+            }
+        }
+
+        public void transferProgressed( TransferEvent event )
+            throws TransferCancelledException
+        {
+            if ( event.getRequestType() == TransferEvent.RequestType.PUT )
+            {
+                try
+                {
+                    acquireBytes( event.getDataLength() );
+                }
+                catch ( InterruptedException e )
+                {
+                    throw cancelled( e );
+                }
+            }
+            if ( delegate != null )
+            {
+                delegate.transferProgressed( event );
+            }
+        }
+
+        public void transferCorrupted( TransferEvent event )
+            throws TransferCancelledException
+        {
+            if ( delegate != null )
+            {
+                delegate.transferCorrupted( event );
+            }
+        }
+
+        public void transferSucceeded( TransferEvent event )
+        {
+            if ( delegate != null )
+            {
+                delegate.transferSucceeded( event );
+            }
+        }
+
+        public void transferFailed( TransferEvent event )
+        {
+            if ( delegate != null )
+            {
+                delegate.transferFailed( event );
+            }
+        }
+
+        private TransferCancelledException cancelled( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return new TransferCancelledException( "Interrupted while waiting for the upload throttle", e );
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.testing.SilentLog;
+
+/**
+ * Compares every decision of an {@link ArtifactPolicy} with the plain <code>Pattern.matches</code> of each black and
+ * white list pattern, which is what the policy optimizes.
+ *
+ * @version $Id$
+ */
+public class ArtifactPolicyTest
+    extends TestCase
+{
+    private static final List<String> IDS = Arrays.asList( new String[] {
+        "com.mycompany.secret:vault:jar::1.0",
+        "com.mycompany.secret:vault:jar:sources:1.0",
+        "com.mycompanyXsecret:vault:jar::1.0",
+        "com.mycompany.secretive:tool:jar::2.1",
+        "com.mycompany.public:api:jar::1.0-SNAPSHOT",
+        "com.mycompany:parent:pom::7",
+        "org.apache.maven:maven-core:jar::3.0.3",
+        "org.apache.maven.plugins:maven-deploy-plugin:maven-plugin::2.8",
+        "org.example:aa:jar::1.0",
+        "org.example:ab:jar::1.0",
+        "org.example:tests:test-jar:tests:1.0",
+        "a:b:c::d",
+        "",
+        ":::",
+    } );
+
+    public void testLiteralPrefixes()
+    {
+        assertSameDecisions( list( "com.mycompany.secret.*", "org\\.apache\\.maven.*" ), null );
+        assertSameDecisions( null, list( "com.mycompany.secret.*", "com.mycompany.*" ) );
+        assertSameDecisions( list( "com\\.mycompany\\.secret:.*" ), null );
+        assertSameDecisions( list( "c.m.mycompany.*", ".*" ), null );
+    }
+
+    public void testEscapedDots()
+    {
+        assertSameDecisions( list( "com\\.mycompany\\.secret.*" ), null );
+        assertSameDecisions( list( "com.mycompany\\.secret.*" ), null );
+        assertSameDecisions( null, list( "com\\.mycompany\\..*" ) );
+    }
+
+    public void testOtherPatterns()
+    {
+        assertSameDecisions( list( ".*:sources:.*", ".*-SNAPSHOT", "org\\.example:a[ab]:.*" ), null );
+        assertSameDecisions( list( ".*:(test-jar|pom):.*" ), null );
+        assertSameDecisions( null, list( ".*:jar:.*", "(com|org)\\..*" ) );
+        assertSameDecisions( list( "com.mycompany.*", ".*:tests:.*" ), null );
+    }
+
+    public void testBackReferences()
+    {
+        assertSameDecisions( list( "org\\.example:(a)\\1:.*", ".*:sources:.*" ), null );
+        assertSameDecisions( list( "([a-z]+):\\1:.*", "com.mycompany.*" ), null );
+        assertSameDecisions( null, list( "org\\.example:(a)\\1:.*" ) );
+    }
+
+    public void testEmptyLists()
+    {
+        assertSameDecisions( null, null );
+        assertSameDecisions( Collections.<String>emptyList(), Collections.<String>emptyList() );
+        for ( String id : IDS )
+        {
+            assertTrue( id, new ArtifactPolicy( null, null, new SilentLog() ).isAuthorized( id ) );
+        }
+    }
+
+    public void testBlackAndWhiteLists()
+    {
+        assertSameDecisions( list( "com.mycompany.secret.*" ), list( "com.mycompany.*" ) );
+        assertSameDecisions( list( ".*:sources:.*", "com.mycompany.secret.*" ), list( ".*:jar:.*", "com.*" ) );
+        assertSameDecisions( list( "org\\.example:(a)\\1:.*" ), list( "org\\.example.*", ".*:1\\.0" ) );
+        assertSameDecisions( list( "nothing" ), list( ".*" ) );
+    }
+
+    private static List<String> list( String... patterns )
+    {
+        return Arrays.asList( patterns );
+    }
+
+    private void assertSameDecisions( List<String> blackList, List<String> whiteList )
+    {
+        ArtifactPolicy policy = new ArtifactPolicy( blackList, whiteList, new SilentLog() );
+        for ( int pass = 0; pass < 2; pass++ )
+        {
+            // the second pass gets the remembered decisions
+            for ( String id : IDS )
+            {
+                boolean expected = expected( blackList, whiteList, id );
+                assertEquals( blackList + " " + whiteList + " " + id, Boolean.valueOf( expected ),
+                              Boolean.valueOf( policy.isAuthorized( id ) ) );
+            }
+        }
+    }
+
+    private static boolean expected( List<String> blackList, List<String> whiteList, String id )
+    {
+        for ( String black : nonNull( blackList ) )
+        {
+            if ( Pattern.matches( black, id ) )
+            {
+                return false;
+            }
+        }
+        for ( String white : nonNull( whiteList ) )
+        {
+            if ( !Pattern.matches( white, id ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> nonNull( List<String> patterns )
+    {
+        return patterns != null ? patterns : new ArrayList<String>();
+    }
+}
@@ -0,0 +1,159 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Uploads a file in chunks to a {@link StandInRepository} and checks how the uploader handles a server that lost
+ * data, a server that only appends and a server that ignores the <code>Content-Range</code> header.
+ *
+ * @version $Id$
+ */
+public class ChunkedUploaderTest
+    extends TestCase
+{
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int CHUNKS = 16;
+
+    private static final String PATH = "org/example/image/1.0/image-1.0.bin";
+
+    private File directory;
+
+    private File file;
+
+    private StandInRepository repository;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        directory = new File( System.getProperty( "basedir", "." ), "target/chunked-uploader-test" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+
+        file = new File( directory, "image.bin" );
+        byte[] content = new byte[CHUNK_SIZE * CHUNKS - 1000];
+        new Random( 42 ).nextBytes( content );
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        if ( repository != null )
+        {
+            repository.stop();
+        }
+        super.tearDown();
+    }
+
+    public void testResumesFromTheBytesTheServerConfirms()
+        throws Exception
+    {
+        repository = new StandInRepository( new File( directory, "remote" ), 0, true );
+        ChunkedUploader uploader = newUploader( 1 );
+        uploader.upload();
+        assertUploaded();
+        assertEquals( CHUNKS, repository.getStoredChunks() );
+        assertEquals( 0, repository.getStatusQueries() );
+
+        // the server loses the end of the file, the next upload asks it what it holds and sends the rest again
+        repository.truncate( PATH, 5L * CHUNK_SIZE + 100 );
+        uploader.upload();
+        assertUploaded();
+        assertEquals( 1, repository.getStatusQueries() );
+        assertEquals( CHUNKS + CHUNKS - 5, repository.getStoredChunks() );
+    }
+
+    public void testResumesAfterDroppedChunks()
+        throws Exception
+    {
+        repository = new StandInRepository( new File( directory, "remote" ), 4, true );
+        newUploader( 1 ).upload();
+        assertUploaded();
+        assertTrue( repository.getStatusQueries() > 0 );
+        assertEquals( CHUNKS, repository.getStoredChunks() );
+    }
+
+    public void testSendsChunksInOrderToServersThatOnlyAppend()
+        throws Exception
+    {
+        repository = new StandInRepository( new File( directory, "remote" ), 0, false );
+        newUploader( 4 ).upload();
+        assertUploaded();
+        assertTrue( repository.getRejectedChunks() > 0 );
+        assertEquals( CHUNKS, repository.getStoredChunks() );
+    }
+
+    public void testChecksTheSizeOfTheStoredFile()
+        throws Exception
+    {
+        repository = new StandInRepository( new File( directory, "remote" ), 0, true );
+        repository.setIgnoreRanges( true );
+        ChunkedUploader uploader = newUploader( 1 );
+        try
+        {
+            uploader.upload();
+            fail( "The upload to a server ignoring the Content-Range header should fail" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "instead of " + file.length() ) >= 0 );
+        }
+        assertEquals( 0, uploader.getAcknowledgedCount() );
+    }
+
+    private ChunkedUploader newUploader( int threads )
+        throws IOException
+    {
+        ChunkedUploader uploader = new ChunkedUploader( new URL( repository.getUrl() + '/' + PATH ), file,
+                                                        CHUNK_SIZE, threads, null, null, null, new SilentLog() );
+        uploader.setTimeouts( 5000, 5000 );
+        return uploader;
+    }
+
+    private void assertUploaded()
+        throws IOException
+    {
+        File uploaded = new File( directory, "remote/repository/" + PATH );
+        assertTrue( uploaded + " differs from " + file, FileUtils.contentEquals( uploaded, file ) );
+    }
+}
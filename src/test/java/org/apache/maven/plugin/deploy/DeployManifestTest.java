@@ -0,0 +1,215 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Reads CSV and JSON manifests with {@link DeployManifest}, including the malformed ones.
+ *
+ * @version $Id$
+ */
+public class DeployManifestTest
+    extends TestCase
+{
+    private File directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        directory = new File( System.getProperty( "basedir", "." ), "target/deploy-manifest-test" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+    }
+
+    public void testCsvQuoting()
+        throws Exception
+    {
+        List<Map<String, String>> records = DeployManifest.parseCsv(
+            "file,groupId,classifier\n\"a,b.jar\", org.example ,\"say \"\"hi\"\"\"\n\"\",\" \",x\n" );
+        assertEquals( 2, records.size() );
+        assertEquals( "a,b.jar", records.get( 0 ).get( "file" ) );
+        assertEquals( "org.example", records.get( 0 ).get( "groupId" ) );
+        assertEquals( "say \"hi\"", records.get( 0 ).get( "classifier" ) );
+        // empty values are missing values
+        assertNull( records.get( 1 ).get( "file" ) );
+        assertNull( records.get( 1 ).get( "groupId" ) );
+        assertEquals( "x", records.get( 1 ).get( "classifier" ) );
+    }
+
+    public void testCsvCommentsEmptyLinesAndMissingFields()
+        throws Exception
+    {
+        List<Map<String, String>> records = DeployManifest.parseCsv(
+            "# deployed nightly\r\nfile,groupId,version\r\n\r\n  # not this one\r\na.jar,org.example\r\n"
+                + "b.jar,,1.0,\r\n" );
+        assertEquals( 2, records.size() );
+        assertEquals( "a.jar", records.get( 0 ).get( "file" ) );
+        assertNull( records.get( 0 ).get( "version" ) );
+        assertEquals( "line 5", records.get( 0 ).get( "#location" ) );
+        // the trailing comma is ignored
+        assertEquals( "1.0", records.get( 1 ).get( "version" ) );
+    }
+
+    public void testCsvErrors()
+        throws Exception
+    {
+        assertCsvError( "file,groupId\na.jar,org.example,1.0,extra\n",
+                        "line 2 has 4 fields but the header only names 2" );
+        assertCsvError( "file,groupId\na.jar,org.example,,x,\n", "line 2 has 4 fields but the header only names 2" );
+        assertCsvError( "file,groupId\n\na.jar,\"org.example\n", "unterminated quote at line 3, column 7" );
+    }
+
+    public void testJson()
+        throws Exception
+    {
+        List<Map<String, String>> records = new DeployManifest.JsonParser(
+            "[\n  {\"file\": \"a.jar\", \"groupId\": \"org.example\", \"version\": 1.5e3, \"classifier\": null},\n"
+                + "  {},\n  {\"file\":\"b.jar\",\"packaging\":true}\n]\n" ).parseRecords();
+        assertEquals( 3, records.size() );
+        assertEquals( "a.jar", records.get( 0 ).get( "file" ) );
+        assertEquals( "1.5e3", records.get( 0 ).get( "version" ) );
+        assertNull( records.get( 0 ).get( "classifier" ) );
+        assertEquals( "entry 2", records.get( 1 ).get( "#location" ) );
+        assertEquals( "true", records.get( 2 ).get( "packaging" ) );
+
+        assertEquals( 0, new DeployManifest.JsonParser( " [ ] " ).parseRecords().size() );
+    }
+
+    public void testJsonEscapesAndUnicode()
+        throws Exception
+    {
+        List<Map<String, String>> records = new DeployManifest.JsonParser(
+            "[{\"file\": \"dir\\\\a \\\"b\\\".jar\", \"classifier\": \"\\u00e9t\\u00C9\\/\\t\", "
+                + "\"groupId\": \"org.\u00fcber\"}]" ).parseRecords();
+        assertEquals( "dir\\a \"b\".jar", records.get( 0 ).get( "file" ) );
+        assertEquals( "\u00e9t\u00c9/\t", records.get( 0 ).get( "classifier" ) );
+        assertEquals( "org.\u00fcber", records.get( 0 ).get( "groupId" ) );
+    }
+
+    public void testJsonErrors()
+    {
+        assertJsonError( "[{\"file\": \"a.jar\"},]", "'{' expected at line 1, column 20" );
+        assertJsonError( "[{\"file\": \"a.jar\",}]", "'\"' expected at line 1, column 19" );
+        assertJsonError( "[\n  {\"file\": \"a.jar\"\n  \"groupId\": \"x\"}]", "'}' expected at line 3, column 3" );
+        assertJsonError( "[{\"file\": \"a.jar}]", "unterminated string at line 1, column 11" );
+        assertJsonError( "[{\"file\": \"a\\u00g1\"}]", "invalid unicode escape at line 1, column 13" );
+        assertJsonError( "[{\"file\": \"a\\u00", "invalid unicode escape at line 1, column 13" );
+        assertJsonError( "[{\"file\": \"a\\x\"}]", "invalid escape \\x at line 1, column 13" );
+        assertJsonError( "[{\"file\": \"a\tb\"}]", "control character in string at line 1, column 13" );
+        assertJsonError( "[{\"file\": a.jar}]", "string, number, boolean or null expected at line 1, column 11" );
+        assertJsonError( "[{\"file\": {\"path\": \"a.jar\"}}]",
+                         "string, number, boolean or null expected at line 1, column 11" );
+        assertJsonError( "[{\"file\": }]", "value expected at line 1, column 11" );
+        assertJsonError( "{\"file\": \"a.jar\"}", "'[' expected at line 1, column 1" );
+        assertJsonError( "[]\n[]", "unexpected content after the array at line 2, column 1" );
+        assertJsonError( "[{\"file\": \"a.jar\"}", "']' expected at line 1, column 19" );
+    }
+
+    public void testReadsManifestsRelativeToTheirDirectory()
+        throws Exception
+    {
+        File csv = write( "manifest.csv", "\uFEFFfile,pomFile,groupId\nlib/a.jar,lib/a.pom,org.\u00fcber\n" );
+        List<DeployManifest.Entry> entries = DeployManifest.read( csv );
+        assertEquals( 1, entries.size() );
+        assertEquals( new File( directory, "lib/a.jar" ), entries.get( 0 ).file );
+        assertEquals( new File( directory, "lib/a.pom" ), entries.get( 0 ).pomFile );
+        assertEquals( "org.\u00fcber", entries.get( 0 ).groupId );
+        assertEquals( "manifest.csv, line 2", entries.get( 0 ).location );
+
+        File absolute = new File( directory, "b.jar" ).getAbsoluteFile();
+        File json = write( "manifest.JSON", "[{\"file\": \"" + absolute.getPath().replace( "\\", "\\\\" )
+            + "\", \"artifactId\": \"b\"}]" );
+        entries = DeployManifest.read( json );
+        assertEquals( absolute, entries.get( 0 ).file );
+        assertEquals( "b", entries.get( 0 ).artifactId );
+        assertNull( entries.get( 0 ).groupId );
+    }
+
+    public void testRejectsUnknownFields()
+        throws Exception
+    {
+        File csv = write( "manifest.csv", "file,group\na.jar,org.example\n" );
+        try
+        {
+            DeployManifest.read( csv );
+            fail( "The unknown field should be reported" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().endsWith( "unknown field(s) [group] in manifest.csv, line 2" ) );
+        }
+    }
+
+    private void assertCsvError( String content, String message )
+        throws IOException
+    {
+        try
+        {
+            DeployManifest.parseCsv( content );
+            fail( "Expected " + message );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertEquals( message, e.getMessage() );
+        }
+    }
+
+    private void assertJsonError( String content, String message )
+    {
+        try
+        {
+            new DeployManifest.JsonParser( content ).parseRecords();
+            fail( "Expected " + message );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertEquals( message, e.getMessage() );
+        }
+    }
+
+    private File write( String name, String content )
+        throws IOException
+    {
+        File file = new File( directory, name );
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content.getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        return file;
+    }
+}
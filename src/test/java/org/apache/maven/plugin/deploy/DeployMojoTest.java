@@ -0,0 +1,218 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.deployer.ArtifactDeployer;
+import org.apache.maven.artifact.deployer.ArtifactDeploymentException;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Deploys a project with attached artifacts on several upload threads, with a deployer that only records what it is
+ * asked to deploy.
+ *
+ * @version $Id$
+ */
+public class DeployMojoTest
+    extends TestCase
+{
+    private File directory;
+
+    private RecordingDeployer deployer;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        directory = new File( System.getProperty( "basedir", "." ), "target/deploy-mojo-test" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+
+        deployer = new RecordingDeployer();
+    }
+
+    public void testDeploysTheAttachedArtifactsWhenFilteringTheProjectPomFails()
+        throws Exception
+    {
+        DeployMojo mojo = newMojo( "project", "<project>this is not a pom</project" );
+
+        Artifact sources = artifact( "project", "sources", "jar" );
+        sources.setFile( write( "sources.jar", "sources" ) );
+        Artifact javadoc = artifact( "project", "javadoc", "jar" );
+        javadoc.setFile( write( "javadoc.jar", "javadoc" ) );
+
+        MojoSupport.set( mojo, "attachedArtifacts", Arrays.asList( sources, javadoc ) );
+        MojoSupport.set( mojo, "filterPom", Boolean.TRUE );
+        MojoSupport.set( mojo, "filteredPomCache", Boolean.FALSE );
+        MojoSupport.set( mojo, "failureIsAnOption", Boolean.TRUE );
+
+        mojo.execute();
+
+        List<String> deployed = deployer.getDeployed();
+        Collections.sort( deployed );
+        assertEquals( Arrays.asList( javadoc.getId(), sources.getId() ), deployed );
+    }
+
+    public void testAppliesTheFailurePolicyOfEveryProjectAtTheEnd()
+        throws Exception
+    {
+        DeployMojo lenient = newMojo( "lenient", "<project/>" );
+        MojoSupport.set( lenient, "failureIsAnOption", Boolean.TRUE );
+        DeployMojo strict = newMojo( "strict", "<project/>" );
+        deployAtEnd( lenient, strict );
+        deployer.fail( "org.example:lenient:pom:1.0" );
+
+        lenient.execute();
+        assertTrue( deployer.getDeployed().isEmpty() );
+        // the failure of the first project is swallowed, although the last project does not allow failures
+        strict.execute();
+        assertEquals( Collections.singletonList( "org.example:strict:pom:1.0" ), deployer.getDeployed() );
+    }
+
+    public void testFailsOnProjectsThatDoNotAllowFailuresAtTheEnd()
+        throws Exception
+    {
+        DeployMojo strict = newMojo( "strict", "<project/>" );
+        DeployMojo lenient = newMojo( "lenient", "<project/>" );
+        MojoSupport.set( lenient, "failureIsAnOption", Boolean.TRUE );
+        deployAtEnd( strict, lenient );
+        deployer.fail( "org.example:strict:pom:1.0" );
+
+        strict.execute();
+        try
+        {
+            lenient.execute();
+            fail( "The failure of the first project should fail the build, although the last project allows it" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Creates a mojo for a project of pom packaging, deploying on two threads.
+     */
+    private DeployMojo newMojo( String artifactId, String pom )
+        throws Exception
+    {
+        ArtifactRepository localRepository = MojoSupport.repository( "local", new File( directory, "local" ) );
+        DeployMojo mojo = MojoSupport.newDeployMojo( localRepository, new SilentLog() );
+        mojo.setDeployer( deployer );
+        MojoSupport.set( mojo, "retryFailedDeploymentCount", Integer.valueOf( 1 ) );
+        MojoSupport.set( mojo, "deployThreads", Integer.valueOf( 2 ) );
+        MojoSupport.set( mojo, "attachedArtifacts", Collections.emptyList() );
+
+        File pomFile = write( artifactId + ".pom", pom );
+        MojoSupport.set( mojo, "pomFile", pomFile );
+        Artifact projectArtifact = artifact( artifactId, null, "pom" );
+        projectArtifact.setFile( pomFile );
+
+        MavenProject project = (MavenProject) MojoSupport.get( mojo, "project" );
+        project.setGroupId( "org.example" );
+        project.setArtifactId( artifactId );
+        project.setArtifact( projectArtifact );
+        project.setReleaseArtifactRepository( MojoSupport.repository( "remote", new File( directory, "remote" ) ) );
+        return mojo;
+    }
+
+    /**
+     * Makes the mojos the projects of one reactor that deploy at the end.
+     */
+    private void deployAtEnd( DeployMojo... mojos )
+    {
+        MavenSession session = (MavenSession) MojoSupport.get( mojos[0], "session" );
+        List<MavenProject> projects = new ArrayList<MavenProject>();
+        for ( DeployMojo mojo : mojos )
+        {
+            MojoSupport.set( mojo, "session", session );
+            MojoSupport.set( mojo, "deployAtEnd", Boolean.TRUE );
+            projects.add( (MavenProject) MojoSupport.get( mojo, "project" ) );
+        }
+        session.setProjects( projects );
+    }
+
+    private Artifact artifact( String artifactId, String classifier, String type )
+    {
+        return new DefaultArtifact( "org.example", artifactId, "1.0", null, type, classifier,
+                                    new DefaultArtifactHandler( type ) );
+    }
+
+    private File write( String name, String content )
+        throws Exception
+    {
+        File file = new File( directory, name );
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", content );
+        return file;
+    }
+
+    /**
+     * Remembers the ids of the artifacts it deploys, from any thread, and fails on the artifacts it is told to.
+     */
+    private static class RecordingDeployer
+        implements ArtifactDeployer
+    {
+        private final List<String> deployed = new ArrayList<String>();
+
+        private final List<String> failing = new ArrayList<String>();
+
+        public void deploy( String basedir, String finalName, Artifact artifact,
+                            ArtifactRepository deploymentRepository, ArtifactRepository localRepository )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public synchronized void deploy( File source, Artifact artifact, ArtifactRepository deploymentRepository,
+                                         ArtifactRepository localRepository )
+            throws ArtifactDeploymentException
+        {
+            if ( failing.contains( artifact.getId() ) )
+            {
+                throw new ArtifactDeploymentException( "Cannot deploy " + artifact.getId() );
+            }
+            deployed.add( artifact.getId() );
+        }
+
+        synchronized void fail( String id )
+        {
+            failing.add( id );
+        }
+
+        synchronized List<String> getDeployed()
+        {
+            return new ArrayList<String>( deployed );
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Records deployments in a {@link DeploymentLedger}, opens it again and checks which files it finds unchanged.
+ *
+ * @version $Id$
+ */
+public class DeploymentLedgerTest
+    extends TestCase
+{
+    private static final String URL = "http://repository.example.org/releases";
+
+    private File directory;
+
+    private File jar;
+
+    private File pom;
+
+    private Artifact artifact;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        directory = new File( System.getProperty( "basedir", "." ), "target/deployment-ledger-test" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+
+        jar = write( "library.jar", "the classes" );
+        pom = write( "library.pom", "<project/>" );
+        artifact = new DefaultArtifact( "org.example", "library", "1.0", null, "jar", null,
+                                        new DefaultArtifactHandler( "jar" ) );
+    }
+
+    public void testRemembersDeploymentsAcrossBuilds()
+        throws Exception
+    {
+        DeploymentLedger ledger = open();
+        assertFalse( ledger.isUnchanged( jar, pom, artifact ) );
+        ledger.record( jar, pom, artifact );
+        assertTrue( ledger.isUnchanged( jar, pom, artifact ) );
+        assertTrue( ledger.isUnchanged( jar, null, artifact ) );
+        ledger.close();
+
+        ledger = open();
+        assertTrue( ledger.isUnchanged( jar, pom, artifact ) );
+        ledger.close();
+
+        // another repository has its own ledger
+        DeploymentLedger other = new DeploymentLedger( directory, "releases", URL + "-2", new SilentLog() );
+        assertFalse( other.isUnchanged( jar, pom, artifact ) );
+    }
+
+    public void testDetectsChangedFiles()
+        throws Exception
+    {
+        DeploymentLedger ledger = open();
+        ledger.record( jar, pom, artifact );
+        ledger.close();
+
+        // a different size
+        write( "library.jar", "the classes, and some more" );
+        ledger = open();
+        assertFalse( ledger.isUnchanged( jar, pom, artifact ) );
+        ledger.record( jar, pom, artifact );
+        assertTrue( ledger.isUnchanged( jar, pom, artifact ) );
+
+        // the same size, another SHA-1
+        write( "library.jar", "the classes, and SOME more" );
+        assertFalse( ledger.isUnchanged( jar, pom, artifact ) );
+        ledger.record( jar, pom, artifact );
+
+        // only the pom changed
+        write( "library.pom", "<project></project>" );
+        assertFalse( ledger.isUnchanged( jar, pom, artifact ) );
+        assertTrue( ledger.isUnchanged( jar, null, artifact ) );
+        ledger.close();
+    }
+
+    public void testIgnoresSnapshots()
+        throws Exception
+    {
+        Artifact snapshot = new DefaultArtifact( "org.example", "library", "1.1-SNAPSHOT", null, "jar", null,
+                                                 new DefaultArtifactHandler( "jar" ) );
+        DeploymentLedger ledger = open();
+        ledger.record( jar, pom, snapshot );
+        assertFalse( ledger.isUnchanged( jar, pom, snapshot ) );
+        ledger.close();
+        assertEquals( 0, ledgerFiles().length );
+    }
+
+    public void testCompactsSupersededRecords()
+        throws Exception
+    {
+        DeploymentLedger ledger = open();
+        for ( int i = 0; i < 1200; i++ )
+        {
+            ledger.record( jar, pom, artifact );
+        }
+        ledger.close();
+        assertEquals( 2400, lines() );
+
+        ledger = open();
+        assertEquals( 2, lines() );
+        assertTrue( ledger.isUnchanged( jar, pom, artifact ) );
+        ledger.close();
+
+        // a few superseded records are kept until there are enough of them
+        ledger = open();
+        ledger.record( jar, pom, artifact );
+        ledger.close();
+        open().close();
+        assertEquals( 4, lines() );
+    }
+
+    private DeploymentLedger open()
+    {
+        return new DeploymentLedger( directory, "releases", URL, new SilentLog() );
+    }
+
+    private File[] ledgerFiles()
+    {
+        File[] files = directory.listFiles();
+        int count = 0;
+        for ( File file : files )
+        {
+            if ( file.getName().endsWith( ".ledger" ) )
+            {
+                files[count++] = file;
+            }
+        }
+        File[] ledgers = new File[count];
+        System.arraycopy( files, 0, ledgers, 0, count );
+        return ledgers;
+    }
+
+    private int lines()
+        throws IOException
+    {
+        File[] ledgers = ledgerFiles();
+        assertEquals( 1, ledgers.length );
+        return FileUtils.fileRead( ledgers[0], "UTF-8" ).split( "\n" ).length;
+    }
+
+    private File write( String name, String content )
+        throws IOException
+    {
+        File file = new File( directory, name );
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", content );
+        return file;
+    }
+}
@@ -0,0 +1,170 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Activation;
+import org.apache.maven.model.ActivationFile;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Filters poms with <code>DeployMojo.filterPom</code> and checks when the {@link FilteredPomCache} hands out an
+ * earlier result.
+ *
+ * @version $Id$
+ */
+public class FilteredPomCacheTest
+    extends TestCase
+{
+    private File directory;
+
+    private File cacheDirectory;
+
+    private DeployMojo mojo;
+
+    private ProjectBuildingRequest request;
+
+    private Profile settingsProfile;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        directory = new File( System.getProperty( "basedir", "." ), "target/filtered-pom-cache-test" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+        cacheDirectory = new File( directory, "cache/filtered-poms" );
+
+        mojo = MojoSupport.newDeployMojo( MojoSupport.repository( "local", new File( directory, "local" ) ),
+                                          new SilentLog() );
+        MojoSupport.set( mojo, "modelBuilder", new DefaultModelBuilderFactory().newInstance() );
+        MojoSupport.set( mojo, "pomCacheDirectory", new File( directory, "cache" ) );
+        MojoSupport.set( mojo, "filteredPomCache", Boolean.TRUE );
+
+        settingsProfile = new Profile();
+        settingsProfile.setId( "versions" );
+        settingsProfile.addProperty( "library.version", "1.5" );
+        request = ( (MavenProject) MojoSupport.get( mojo, "project" ) ).getProjectBuildingRequest();
+        request.setProfiles( Collections.singletonList( settingsProfile ) );
+        request.setActiveProfileIds( Collections.singletonList( "versions" ) );
+    }
+
+    public void testReusesTheFilteredPomOfAnUnchangedBuild()
+        throws Exception
+    {
+        File pomFile = writePom( "" );
+        assertTrue( filter( pomFile ).indexOf( "<version>1.5</version>" ) >= 0 );
+        assertEquals( 1, cachedPoms() );
+        assertTrue( filter( pomFile ).indexOf( "<version>1.5</version>" ) >= 0 );
+        assertEquals( 1, cachedPoms() );
+    }
+
+    public void testMissesWhenAPropertyOfASettingsProfileChanges()
+        throws Exception
+    {
+        File pomFile = writePom( "" );
+        filter( pomFile );
+        assertEquals( 1, cachedPoms() );
+
+        settingsProfile.addProperty( "library.version", "2.5" );
+        assertTrue( filter( pomFile ).indexOf( "<version>2.5</version>" ) >= 0 );
+        assertEquals( 2, cachedPoms() );
+    }
+
+    public void testMissesWhenASystemPropertyChanges()
+        throws Exception
+    {
+        File pomFile = writePom( "" );
+        filter( pomFile );
+        request.getSystemProperties().setProperty( "env.LIBRARY_HOME", "/opt/library" );
+        filter( pomFile );
+        assertEquals( 2, cachedPoms() );
+    }
+
+    public void testDoesNotCachePomsWithProfilesActivatedByAFile()
+        throws Exception
+    {
+        File pomFile = writePom( "  <profiles>\n    <profile>\n      <id>local</id>\n      <activation>\n"
+            + "        <file><exists>${basedir}/local.properties</exists></file>\n      </activation>\n"
+            + "    </profile>\n  </profiles>\n" );
+        assertTrue( filter( pomFile ).indexOf( "<version>1.5</version>" ) >= 0 );
+        assertEquals( 0, cachedPoms() );
+    }
+
+    public void testDoesNotCacheWithSettingsProfilesActivatedByAFile()
+        throws Exception
+    {
+        Activation activation = new Activation();
+        activation.setFile( new ActivationFile() );
+        activation.getFile().setMissing( "${user.home}/.library" );
+        settingsProfile.setActivation( activation );
+
+        filter( writePom( "" ) );
+        assertEquals( 0, cachedPoms() );
+    }
+
+    /**
+     * @return the content of the filtered pom
+     */
+    private String filter( File pomFile )
+        throws Exception
+    {
+        Artifact pomArtifact = new DefaultArtifact( "org.example", "library", "1.0", null, "pom", null,
+                                                    new DeployMojo.PomArtifactHandler() );
+        pomArtifact.setFile( pomFile );
+        MojoSupport.invoke( mojo, "filterPom", new Class<?>[] { Artifact.class }, pomArtifact );
+        return FileUtils.fileRead( pomArtifact.getFile(), "UTF-8" );
+    }
+
+    private int cachedPoms()
+    {
+        String[] names = cacheDirectory.list();
+        int count = 0;
+        for ( int i = 0; names != null && i < names.length; i++ )
+        {
+            count += names[i].endsWith( ".pom" ) ? 1 : 0;
+        }
+        return count;
+    }
+
+    private File writePom( String profiles )
+        throws IOException
+    {
+        File file = new File( directory, "pom.xml" );
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", "<project>\n  <modelVersion>4.0.0</modelVersion>\n"
+            + "  <groupId>org.example</groupId>\n  <artifactId>library</artifactId>\n  <version>1.0</version>\n"
+            + "  <dependencies>\n    <dependency>\n      <groupId>org.example</groupId>\n"
+            + "      <artifactId>dependency</artifactId>\n      <version>${library.version}</version>\n"
+            + "    </dependency>\n  </dependencies>\n" + profiles + "</project>\n" );
+        return file;
+    }
+}
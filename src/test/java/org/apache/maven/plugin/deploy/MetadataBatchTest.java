@@ -0,0 +1,144 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.deployer.ArtifactDeploymentException;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.project.artifact.ProjectArtifactMetadata;
+
+/**
+ * Checks which files {@link MetadataBatch} deploys for a group of artifacts of the same version.
+ *
+ * @version $Id$
+ */
+public class MetadataBatchTest
+    extends TestCase
+{
+    private final ArtifactRepository repository = MojoSupport.repository( "remote", new File( "remote" ) );
+
+    private final File projectPom = new File( "pom.xml" );
+
+    private final File filteredPom = new File( "filtered.pom" );
+
+    private List<MetadataBatch.Item> group;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        group = new ArrayList<MetadataBatch.Item>();
+    }
+
+    public void testDeploysThePomOfTheArtifactsOnce()
+        throws Exception
+    {
+        add( "library.jar", artifact( null, "jar" ), projectPom );
+        add( "library-sources.jar", artifact( "sources", "jar" ), projectPom );
+
+        assertEquals( "[library.jar, library-sources.jar, pom.xml]", files( MetadataBatch.toArtifacts( group ) ) );
+    }
+
+    public void testPrefersThePomArtifactOverThePomOfTheArtifacts()
+        throws Exception
+    {
+        // the filtered pom is deployed after the artifact, and before it
+        add( "library.jar", artifact( null, "jar" ), projectPom );
+        add( filteredPom.getPath(), artifact( null, "pom" ), null );
+        assertEquals( "[library.jar, filtered.pom]", files( MetadataBatch.toArtifacts( group ) ) );
+
+        group.clear();
+        add( filteredPom.getPath(), artifact( null, "pom" ), null );
+        add( "library.jar", artifact( null, "jar" ), projectPom );
+        assertEquals( "[filtered.pom, library.jar]", files( MetadataBatch.toArtifacts( group ) ) );
+    }
+
+    public void testDeploysAnArtifactAddedTwiceOnce()
+        throws Exception
+    {
+        add( "library.jar", artifact( null, "jar" ), projectPom );
+        add( "library.jar", artifact( null, "jar" ), projectPom );
+
+        assertEquals( "[library.jar, pom.xml]", files( MetadataBatch.toArtifacts( group ) ) );
+    }
+
+    public void testFailsOnDifferentFilesForTheSameArtifact()
+        throws Exception
+    {
+        add( "library.jar", artifact( null, "jar" ), projectPom );
+        add( "other.jar", artifact( null, "jar" ), projectPom );
+        assertCollision();
+
+        group.clear();
+        add( filteredPom.getPath(), artifact( null, "pom" ), null );
+        add( projectPom.getPath(), artifact( null, "pom" ), null );
+        assertCollision();
+
+        group.clear();
+        add( "library.jar", artifact( null, "jar" ), projectPom );
+        add( "library-sources.jar", artifact( "sources", "jar" ), new File( "other.pom" ) );
+        assertCollision();
+    }
+
+    private void assertCollision()
+    {
+        try
+        {
+            MetadataBatch.toArtifacts( group );
+            fail( "Two files for the same artifact should not be deployed" );
+        }
+        catch ( ArtifactDeploymentException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Cannot deploy both " ) );
+        }
+    }
+
+    private Artifact artifact( String classifier, String type )
+    {
+        return new DefaultArtifact( "org.example", "library", "1.0", null, type, classifier,
+                                    new DefaultArtifactHandler( type ) );
+    }
+
+    private void add( String source, Artifact artifact, File pomFile )
+    {
+        if ( pomFile != null )
+        {
+            artifact.addMetadata( new ProjectArtifactMetadata( artifact, pomFile ) );
+        }
+        group.add( new MetadataBatch.Item( new File( source ), artifact, repository ) );
+    }
+
+    private static String files( List<org.sonatype.aether.artifact.Artifact> artifacts )
+    {
+        List<String> files = new ArrayList<String>();
+        for ( org.sonatype.aether.artifact.Artifact artifact : artifacts )
+        {
+            files.add( artifact.getFile().getPath() );
+        }
+        return files.toString();
+    }
+}
@@ -0,0 +1,159 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Helpers shared by the tests and the benchmarks: the mojos are configured by reflection, the way Maven injects their
+ * parameters.
+ *
+ * @version $Id$
+ */
+final class MojoSupport
+{
+    private MojoSupport()
+    {
+    }
+
+    /**
+     * Sets a field of an object, looking it up in the class hierarchy.
+     */
+    static void set( Object target, String name, Object value )
+    {
+        try
+        {
+            Field field = findField( target.getClass(), name );
+            field.setAccessible( true );
+            field.set( target, value );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Gets a field of an object, looking it up in the class hierarchy.
+     */
+    static Object get( Object target, String name )
+    {
+        try
+        {
+            Field field = findField( target.getClass(), name );
+            field.setAccessible( true );
+            return field.get( target );
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Calls a method of an object, looking it up in the class hierarchy.
+     */
+    static Object invoke( Object target, String name, Class<?>[] types, Object... arguments )
+        throws Exception
+    {
+        for ( Class<?> type = target.getClass(); type != null; type = type.getSuperclass() )
+        {
+            try
+            {
+                Method method = type.getDeclaredMethod( name, types );
+                method.setAccessible( true );
+                return method.invoke( target, arguments );
+            }
+            catch ( NoSuchMethodException e )
+            {
+                // try the superclass
+            }
+            catch ( InvocationTargetException e )
+            {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        throw new NoSuchMethodException( name );
+    }
+
+    private static Field findField( Class<?> type, String name )
+    {
+        for ( Class<?> current = type; current != null; current = current.getSuperclass() )
+        {
+            try
+            {
+                return current.getDeclaredField( name );
+            }
+            catch ( NoSuchFieldException e )
+            {
+                // try the superclass
+            }
+        }
+        throw new IllegalArgumentException( "No field " + name + " in " + type.getName() );
+    }
+
+    /**
+     * @return a file repository in the directory
+     */
+    static ArtifactRepository repository( String id, File directory )
+    {
+        return new MavenArtifactRepository( id, directory.toURI().toString(), new DefaultRepositoryLayout(),
+                                            new ArtifactRepositoryPolicy(), new ArtifactRepositoryPolicy() );
+    }
+
+    /**
+     * Creates a deploy mojo for a bare project, with the parameters set that have no usable Java default.
+     */
+    static DeployMojo newDeployMojo( ArtifactRepository localRepository, Log log )
+    {
+        MavenProject project = new MavenProject();
+        project.setGroupId( "org.example.benchmark" );
+        project.setArtifactId( "benchmark" );
+        project.setVersion( "1.0" );
+        project.setProjectBuildingRequest( new DefaultProjectBuildingRequest() );
+
+        DefaultMavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        MavenSession session = new MavenSession( null, request, new DefaultMavenExecutionResult(), project );
+
+        DeployMojo mojo = new DeployMojo();
+        mojo.setLog( log );
+        mojo.setLocalRepository( localRepository );
+        set( mojo, "project", project );
+        set( mojo, "session", session );
+        set( mojo, "local", localRepository );
+        set( mojo, "pomCacheSize", Integer.valueOf( 1000 ) );
+        set( mojo, "filteredPomCacheSize", Integer.valueOf( 1000 ) );
+        return mojo;
+    }
+}
@@ -0,0 +1,361 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * A local HTTP repository standing in for a repository manager that accepts chunked uploads, as {@link ChunkedUploader}
+ * sends them: <code>PUT</code> with a <code>Content-Range</code> header stores the chunk at its offset, a status
+ * query is answered with <code>308</code> and the bytes received from the start, <code>GET</code> and
+ * <code>HEAD</code> serve the stored files. It can drop every n-th chunk before acknowledging it, like a flaky link,
+ * and refuse chunks that do not continue the received bytes, like a server that only appends. It can also ignore the
+ * <code>Content-Range</code> header and store every chunk as the whole file, like a plain web server, or forget the
+ * end of a file it acknowledged, like a server that lost data. It counts the requests it got, so a test can check
+ * how an upload went.
+ *
+ * @version $Id$
+ */
+final class StandInRepository
+{
+    private static final Pattern RANGE = Pattern.compile( "bytes (\\d+)-(\\d+)/(\\d+)" );
+
+    private final File basedir;
+
+    private final int failEvery;
+
+    private final boolean outOfOrder;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final AtomicInteger chunks = new AtomicInteger();
+
+    private final AtomicInteger storedChunks = new AtomicInteger();
+
+    private final AtomicInteger rejectedChunks = new AtomicInteger();
+
+    private final AtomicInteger statusQueries = new AtomicInteger();
+
+    private volatile boolean ignoreRanges;
+
+    /**
+     * The byte ranges received of every file, by path, from their first to their last byte.
+     */
+    private final Map<String, TreeMap<Long, Long>> received = new HashMap<String, TreeMap<Long, Long>>();
+
+    /**
+     * @param basedir where to store the uploaded files
+     * @param failEvery drop every n-th chunk upload, 0 to accept all of them
+     * @param outOfOrder whether chunks may be sent in any order
+     */
+    StandInRepository( File basedir, int failEvery, boolean outOfOrder )
+        throws IOException
+    {
+        this.basedir = basedir;
+        this.failEvery = failEvery;
+        this.outOfOrder = outOfOrder;
+        server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.createContext( "/", new HttpHandler()
+        {
+            public void handle( HttpExchange exchange )
+                throws IOException
+            {
+                try
+                {
+                    dispatch( exchange );
+                }
+                finally
+                {
+                    exchange.close();
+                }
+            }
+        } );
+        server.setExecutor( executor );
+        server.start();
+    }
+
+    String getUrl()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/repository";
+    }
+
+    void stop()
+    {
+        server.stop( 0 );
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param ignoreRanges whether to store the content of every <code>PUT</code> as the whole file, whatever its
+     *            <code>Content-Range</code>
+     */
+    void setIgnoreRanges( boolean ignoreRanges )
+    {
+        this.ignoreRanges = ignoreRanges;
+    }
+
+    /**
+     * Forgets the bytes of a file past the given length, as if the server lost them after acknowledging them.
+     *
+     * @param path the path of the file in the repository
+     * @param length the number of bytes to keep
+     */
+    void truncate( String path, long length )
+        throws IOException
+    {
+        String key = "/repository/" + path;
+        synchronized ( received )
+        {
+            TreeMap<Long, Long> ranges = new TreeMap<Long, Long>();
+            if ( length > 0 )
+            {
+                ranges.put( Long.valueOf( 0 ), Long.valueOf( length - 1 ) );
+            }
+            received.put( key, ranges );
+            RandomAccessFile out = new RandomAccessFile( new File( basedir, key ), "rw" );
+            try
+            {
+                out.setLength( length );
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * @return the chunks stored
+     */
+    int getStoredChunks()
+    {
+        return storedChunks.get();
+    }
+
+    /**
+     * @return the chunks refused because they did not continue the received bytes
+     */
+    int getRejectedChunks()
+    {
+        return rejectedChunks.get();
+    }
+
+    /**
+     * @return the status queries answered
+     */
+    int getStatusQueries()
+    {
+        return statusQueries.get();
+    }
+
+    private void dispatch( HttpExchange exchange )
+        throws IOException
+    {
+        String path = exchange.getRequestURI().getPath();
+        File file = new File( basedir, path );
+        String method = exchange.getRequestMethod();
+        // the server closes the connection of an exchange whose request body was not read
+        byte[] content = IOUtil.toByteArray( exchange.getRequestBody() );
+        if ( "PUT".equals( method ) )
+        {
+            String range = exchange.getRequestHeaders().getFirst( "Content-Range" );
+            if ( range == null || ignoreRanges )
+            {
+                store( exchange, path, file, content );
+            }
+            else if ( range.startsWith( "bytes */" ) )
+            {
+                statusQueries.incrementAndGet();
+                answerStatus( exchange, received( path ), Long.parseLong( range.substring( 8 ) ) );
+            }
+            else
+            {
+                storeChunk( exchange, path, file, range, content );
+            }
+        }
+        else if ( !file.isFile() )
+        {
+            respond( exchange, 404 );
+        }
+        else if ( "HEAD".equals( method ) )
+        {
+            exchange.getResponseHeaders().set( "Content-Length", String.valueOf( file.length() ) );
+            respond( exchange, 200 );
+        }
+        else
+        {
+            exchange.sendResponseHeaders( 200, file.length() );
+            InputStream in = new FileInputStream( file );
+            try
+            {
+                IOUtil.copy( in, exchange.getResponseBody() );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    private void store( HttpExchange exchange, String path, File file, byte[] content )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        synchronized ( received )
+        {
+            received.remove( path );
+        }
+        respond( exchange, 201 );
+    }
+
+    private void storeChunk( HttpExchange exchange, String path, File file, String range, byte[] content )
+        throws IOException
+    {
+        Matcher matcher = RANGE.matcher( range );
+        if ( !matcher.matches() )
+        {
+            respond( exchange, 400 );
+            return;
+        }
+        long first = Long.parseLong( matcher.group( 1 ) );
+        long last = Long.parseLong( matcher.group( 2 ) );
+        long total = Long.parseLong( matcher.group( 3 ) );
+
+        if ( !outOfOrder && first != received( path ) )
+        {
+            rejectedChunks.incrementAndGet();
+            respond( exchange, 416 );
+            return;
+        }
+
+        if ( failEvery > 0 && chunks.incrementAndGet() % failEvery == 0 )
+        {
+            // closing the exchange without a response drops the connection
+            return;
+        }
+
+        file.getParentFile().mkdirs();
+        RandomAccessFile out = new RandomAccessFile( file, "rw" );
+        long confirmed;
+        try
+        {
+            out.seek( first );
+            out.write( content );
+            synchronized ( received )
+            {
+                TreeMap<Long, Long> ranges = received.get( path );
+                if ( ranges == null )
+                {
+                    ranges = new TreeMap<Long, Long>();
+                    received.put( path, ranges );
+                }
+                ranges.put( Long.valueOf( first ), Long.valueOf( last ) );
+                storedChunks.incrementAndGet();
+                confirmed = received( path );
+                if ( confirmed == total )
+                {
+                    out.setLength( total );
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        answerStatus( exchange, confirmed, total );
+    }
+
+    private static void respond( HttpExchange exchange, int status )
+        throws IOException
+    {
+        // an answer without body is complete once sent, closing its body too hands the connection over twice
+        exchange.sendResponseHeaders( status, -1 );
+    }
+
+    private void answerStatus( HttpExchange exchange, long received, long total )
+        throws IOException
+    {
+        if ( received >= total )
+        {
+            respond( exchange, 201 );
+            return;
+        }
+        if ( received > 0 )
+        {
+            exchange.getResponseHeaders().set( "Range", "bytes=0-" + ( received - 1 ) );
+        }
+        respond( exchange, ChunkedUploader.RESUME_INCOMPLETE );
+    }
+
+    /**
+     * @return the number of bytes received from the start of the file without a gap
+     */
+    private long received( String path )
+    {
+        synchronized ( received )
+        {
+            TreeMap<Long, Long> ranges = received.get( path );
+            long end = 0;
+            if ( ranges != null )
+            {
+                for ( Map.Entry<Long, Long> range : ranges.entrySet() )
+                {
+                    if ( range.getKey().longValue() > end )
+                    {
+                        break;
+                    }
+                    end = Math.max( end, range.getValue().longValue() + 1 );
+                }
+            }
+            return end;
+        }
+    }
+}
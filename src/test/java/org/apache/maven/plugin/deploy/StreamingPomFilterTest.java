@@ -0,0 +1,169 @@
+package org.apache.maven.plugin.deploy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+
+import junit.framework.TestCase;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.io.DefaultModelReader;
+import org.apache.maven.model.io.DefaultModelWriter;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Filters the poms in <code>src/test/resources/streaming-pom-filter</code> with the {@link StreamingPomFilter} and
+ * with the model builder, through <code>DeployMojo.filterPom</code>, and checks that both give the same pom.
+ *
+ * @version $Id$
+ */
+public class StreamingPomFilterTest
+    extends TestCase
+{
+    private File directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        directory = new File( System.getProperty( "basedir", "." ), "target/streaming-pom-filter-test" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+    }
+
+    public void testFiltersLikeTheModelBuilder()
+        throws Exception
+    {
+        assertSameModel( "library.pom" );
+        assertSameModel( "aggregator.pom" );
+    }
+
+    public void testLeavesOutStrippedElementsTestDependenciesAndComments()
+        throws Exception
+    {
+        String filtered = FileUtils.fileRead( stream( "library.pom" ), "UTF-8" );
+        assertTrue( filtered, filtered.indexOf( "<name>Library &amp; friends</name>" ) >= 0 );
+        assertTrue( filtered, filtered.indexOf( "<licenses>" ) >= 0 );
+        assertTrue( filtered, filtered.indexOf( "<artifactId>runtime</artifactId>" ) >= 0 );
+        assertTrue( filtered, filtered.indexOf( "<artifactId>commons-logging</artifactId>" ) >= 0 );
+        String[] leftOut = { "<url>http://www.example.org", "<scm>", "<issueManagement>", "<developers>",
+            "<properties>", "<repositories>", "<build>", "<distributionManagement>", "<artifactId>junit</artifactId>",
+            "<artifactId>fixtures</artifactId>", "<!--" };
+        for ( String element : leftOut )
+        {
+            assertTrue( element + " in " + filtered, filtered.indexOf( element ) < 0 );
+        }
+
+        filtered = FileUtils.fileRead( stream( "aggregator.pom" ), "UTF-8" );
+        assertTrue( filtered, filtered.indexOf( "<name>Aggregator of M\u00fcnchen</name>" ) >= 0 );
+        assertTrue( filtered, filtered.indexOf( "<modules>" ) < 0 );
+        assertTrue( filtered, filtered.indexOf( "<!--" ) < 0 );
+    }
+
+    public void testFallsBackOnPomsWithAnotherEffectiveModel()
+        throws Exception
+    {
+        assertFallsBack( "parent.pom", "the pom has a parent element" );
+        assertFallsBack( "profiles.pom", "the pom has a profiles element" );
+        assertFallsBack( "dependency-management.pom", "the pom has a dependencyManagement element" );
+        assertFallsBack( "interpolation.pom", "the pom refers to properties" );
+    }
+
+    private void assertSameModel( String name )
+        throws Exception
+    {
+        String streamed = normalize( filter( name, true ) );
+        String built = normalize( filter( name, false ) );
+        assertEquals( name, built, streamed );
+    }
+
+    private void assertFallsBack( String name, String reason )
+        throws Exception
+    {
+        StreamingPomFilter filter = new StreamingPomFilter();
+        File target = new File( directory, name );
+        assertFalse( name, filter.filter( fixture( name ), target ) );
+        assertEquals( name, reason, filter.getReason() );
+        assertFalse( name, target.exists() );
+    }
+
+    private File stream( String name )
+        throws Exception
+    {
+        File target = new File( directory, name );
+        assertTrue( name, new StreamingPomFilter().filter( fixture( name ), target ) );
+        return target;
+    }
+
+    /**
+     * @return the pom filtered by the mojo
+     */
+    private File filter( String name, boolean streaming )
+        throws Exception
+    {
+        DeployMojo mojo = MojoSupport.newDeployMojo( MojoSupport.repository( "local", new File( directory, "local" ) ),
+                                                     new SilentLog() );
+        MojoSupport.set( mojo, "modelBuilder", new DefaultModelBuilderFactory().newInstance() );
+        MojoSupport.set( mojo, "streamingPomFilter", Boolean.valueOf( streaming ) );
+        MojoSupport.set( mojo, "filteredPomCache", Boolean.FALSE );
+
+        Artifact pomArtifact = new DefaultArtifact( "org.example", name, "1.0", null, "pom", null,
+                                                    new DeployMojo.PomArtifactHandler() );
+        pomArtifact.setFile( fixture( name ) );
+        MojoSupport.invoke( mojo, "filterPom", new Class<?>[] { Artifact.class }, pomArtifact );
+        assertFalse( name, pomArtifact.getFile().equals( fixture( name ) ) );
+        return pomArtifact.getFile();
+    }
+
+    /**
+     * Reads a pom into a model and writes it back in UTF-8, so the formatting and the encoding do not matter. The
+     * effective model gives the dependencies without a scope the compile scope they have anyway, the streaming filter
+     * leaves them as they are.
+     */
+    private static String normalize( File pomFile )
+        throws Exception
+    {
+        Model model = new DefaultModelReader().read( pomFile, null );
+        model.setModelEncoding( "UTF-8" );
+        for ( Dependency dependency : model.getDependencies() )
+        {
+            if ( dependency.getScope() == null )
+            {
+                dependency.setScope( Artifact.SCOPE_COMPILE );
+            }
+        }
+        StringWriter writer = new StringWriter();
+        new DefaultModelWriter().write( writer, null, model );
+        return writer.toString();
+    }
+
+    private File fixture( String name )
+        throws URISyntaxException
+    {
+        return new File( getClass().getResource( "/streaming-pom-filter/" + name ).toURI() );
+    }
+}